@@ -0,0 +1,117 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Compares the latency of single operations with a connection that is opened and closed for every
+ * operation and with one connection that is kept open, like the connection modes of the
+ * <code>DatabaseHelper</code> of the app. Opening includes enabling write-ahead logging and checking
+ * the schema, like opening the database on a device.
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class ConnectionModeBenchmark {
+
+    /**
+     * The connection modes of the <code>DatabaseHelper</code>, the app class needs the Android SDK.
+     */
+    public enum ConnectionMode {
+        PER_OPERATION,
+        PERSISTENT
+    }
+
+    //the latency of a single operation barely depends on the number of rows
+    private static final int SIZE = 1000;
+
+    @Param({"PER_OPERATION", "PERSISTENT"})
+    public ConnectionMode mode;
+
+    private File file;
+    //the open connection in the persistent mode, otherwise null
+    private JdbcTaskDao persistentDao;
+    private List<Task> tasks;
+    private Random random;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        file = TaskFixtures.createDatabaseFile();
+        JdbcTaskDao dao = new JdbcTaskDao(file.getPath());
+        tasks = TaskFixtures.createTasks(TaskFixtures.createRows(SIZE));
+        for (Task task : tasks) task.setId(Task.TRANSIENT);
+        if (!dao.saveAll(tasks)) throw new IllegalStateException("Could not seed " + SIZE + " tasks");
+
+        if (mode == ConnectionMode.PERSISTENT) persistentDao = dao;
+        else dao.close();
+        random = new Random(TaskFixtures.SEED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (persistentDao != null) persistentDao.close();
+        persistentDao = null;
+        TaskFixtures.deleteDatabaseFile(file);
+    }
+
+    /**
+     * Reads a single task, like opening the editor of a task.
+     */
+    @Benchmark
+    public Task getTask() throws SQLException {
+        JdbcTaskDao dao = open();
+        try {
+            return dao.getTask(randomTask().getId());
+        } finally {
+            release(dao);
+        }
+    }
+
+    /**
+     * Checks or unchecks a single task.
+     */
+    @Benchmark
+    public long save() throws SQLException {
+        JdbcTaskDao dao = open();
+        try {
+            Task task = randomTask();
+            task.setDone(!task.isDone());
+            return dao.save(task);
+        } finally {
+            release(dao);
+        }
+    }
+
+    private JdbcTaskDao open() throws SQLException {
+        return persistentDao != null ? persistentDao : new JdbcTaskDao(file.getPath());
+    }
+
+    private void release(final JdbcTaskDao dao) {
+        if (dao != persistentDao) dao.close();
+    }
+
+    private Task randomTask() {
+        return tasks.get(random.nextInt(tasks.size()));
+    }
+
+}
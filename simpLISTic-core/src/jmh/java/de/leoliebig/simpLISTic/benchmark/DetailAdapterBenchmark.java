@@ -0,0 +1,68 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.DetailAdapter;
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Measures encoding and decoding the JSON representation of {@link Task.Detail} objects with notes of
+ * different lengths. The reflective Gson serialization the {@link DetailAdapter} replaced is measured
+ * as baseline, both read and write the same format.
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class DetailAdapterBenchmark {
+
+    @Param({"0", "256", "4096"})
+    public int notesLength;
+
+    private Task.Detail detail;
+    private String json;
+    private Gson gson;
+
+    @Setup
+    public void setUp() {
+        gson = new Gson();
+        detail = TaskFixtures.createDetail(new Random(TaskFixtures.SEED), notesLength);
+        json = DetailAdapter.encode(detail);
+    }
+
+    @Benchmark
+    public String encode() {
+        return DetailAdapter.encode(detail);
+    }
+
+    @Benchmark
+    public Task.Detail decode() {
+        return DetailAdapter.decode(json);
+    }
+
+    @Benchmark
+    public String encodeReflective() {
+        return gson.toJson(detail);
+    }
+
+    @Benchmark
+    public Task.Detail decodeReflective() {
+        return gson.fromJson(json, Task.Detail.class);
+    }
+
+}
@@ -0,0 +1,400 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.leoliebig.simpLISTic.db.Schema;
+import de.leoliebig.simpLISTic.db.TaskDao;
+import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskListDiff;
+import de.leoliebig.simpLISTic.model.TaskOrder;
+
+/**
+ * A {@link TaskDao} on a SQLite file accessed with JDBC. It creates the same tables and indexes as the
+ * app and prepares the same insert and update statements from {@link Schema}: precompiled statements,
+ * one transaction per batch and the full-text search table updated inside of the same transaction.
+ * This makes the data access measurable on the JVM, the absolute numbers differ from a device but
+ * regressions show up in both.
+ *
+ * <p>The transaction and binding code is a copy of the batch writer of the app, which depends on the
+ * Android SDK, so changes to it have to be repeated here. The statement caching of the
+ * <code>DatabaseHelper</code>, its connection modes, its task cache and the write queue are not
+ * exercised. Unlike the list of the app {@link #getAll()} creates every task at once, which equals
+ * scrolling through the whole list. The lazily loaded list of the app is mirrored by
+ * {@link #getListRows()} and {@link #getTasks(long[])}. Instances are not thread safe.</p>
+ *
+ * @author info@leoliebig.de
+ */
+final class JdbcTaskDao implements TaskDao, Closeable {
+
+    private static final String COLUMNS =
+            Schema.TaskEntry._ID + "," +
+                    Schema.TaskEntry.COLUMN_TITLE + "," +
+                    Schema.TaskEntry.COLUMN_LIST_POS + "," +
+                    Schema.TaskEntry.COLUMN_DUE_DATE + "," +
+                    Schema.TaskEntry.COLUMN_DONE + "," +
+                    Schema.TaskEntry.COLUMN_JSON_DETAIL;
+
+    private static final String SQL_SELECT_ALL =
+            "SELECT " + COLUMNS + " FROM " + Schema.TaskEntry.TABLE_NAME +
+                    " ORDER BY " + Schema.TaskEntry.COLUMN_LIST_POS + " ASC";
+
+    private static final String SQL_SELECT_LIST_ROWS =
+            "SELECT " +
+                    Schema.TaskEntry._ID + "," +
+                    Schema.TaskEntry.COLUMN_TITLE + "," +
+                    Schema.TaskEntry.COLUMN_LIST_POS + "," +
+                    Schema.TaskEntry.COLUMN_DUE_DATE + "," +
+                    Schema.TaskEntry.COLUMN_DONE +
+                    " FROM " + Schema.TaskEntry.TABLE_NAME +
+                    " ORDER BY " + Schema.TaskEntry.COLUMN_LIST_POS + " ASC";
+
+    private static final String SQL_SELECT =
+            "SELECT " + COLUMNS + " FROM " + Schema.TaskEntry.TABLE_NAME +
+                    " WHERE " + Schema.TaskEntry._ID + "=?";
+
+    private static final String SQL_DELETE =
+            "DELETE FROM " + Schema.TaskEntry.TABLE_NAME +
+                    " WHERE " + Schema.TaskEntry._ID + "=?";
+
+    private final Connection connection;
+    private final PreparedStatement selectAll;
+    private final PreparedStatement selectListRows;
+    private final PreparedStatement select;
+    private final PreparedStatement insert;
+    private final PreparedStatement update;
+    private final PreparedStatement updateListPos;
+    private final PreparedStatement delete;
+    private final PreparedStatement searchInsert;
+    private final PreparedStatement searchUpdateTitle;
+    private final PreparedStatement searchDelete;
+
+    /**
+     * Opens the database at the passed path and creates the schema if the file is new.
+     * @param path The path of the database file.
+     * @throws SQLException If the database can not be opened.
+     */
+    JdbcTaskDao(final String path) throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+        createSchema();
+        connection.setAutoCommit(false);
+
+        selectAll = connection.prepareStatement(SQL_SELECT_ALL);
+        selectListRows = connection.prepareStatement(SQL_SELECT_LIST_ROWS);
+        select = connection.prepareStatement(SQL_SELECT);
+        insert = connection.prepareStatement(Schema.TaskStatements.SQL_INSERT, Statement.RETURN_GENERATED_KEYS);
+        update = connection.prepareStatement(Schema.TaskStatements.SQL_UPDATE);
+        updateListPos = connection.prepareStatement(Schema.TaskStatements.SQL_UPDATE_LIST_POS);
+        delete = connection.prepareStatement(SQL_DELETE);
+        searchInsert = connection.prepareStatement(Schema.SearchStatements.SQL_INSERT);
+        searchUpdateTitle = connection.prepareStatement(Schema.SearchStatements.SQL_UPDATE_TITLE);
+        searchDelete = connection.prepareStatement(Schema.SearchStatements.SQL_DELETE);
+    }
+
+    /**
+     * Creates the tables and indexes of the current {@link Schema#DATABASE_VERSION}, like a fresh
+     * install of the app on Lollipop.
+     */
+    private void createSchema() throws SQLException {
+
+        Statement statement = connection.createStatement();
+        try {
+            //the app enables write-ahead logging as well
+            statement.execute("PRAGMA journal_mode=WAL");
+            ResultSet tables = statement.executeQuery("SELECT count(*) FROM sqlite_master WHERE name='"
+                    + Schema.TaskEntry.TABLE_NAME + "'");
+            boolean exists = tables.next() && tables.getInt(1) > 0;
+            tables.close();
+            if (exists) return;
+
+            statement.execute(Schema.TagTable.SQL_CREATE_ENTRIES);
+            statement.execute(Schema.TaskIndex.SQL_CREATE_LIST_POS);
+            statement.execute(Schema.TaskIndex.SQL_CREATE_DONE_LIST_POS);
+            statement.execute(Schema.TaskIndex.SQL_CREATE_PENDING_DUE_DATE);
+            try {
+                statement.execute(Schema.SearchTable.SQL_CREATE_ENTRIES);
+            } catch (SQLException e) {
+                //the driver was built without the unicode61 tokenizer
+                statement.execute(Schema.SearchTable.SQL_CREATE_ENTRIES_COMPAT);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public List<Task> getAll() {
+        try {
+            ResultSet rows = selectAll.executeQuery();
+            List<Task> tasks = new ArrayList<>();
+            try {
+                while (rows.next()) tasks.add(readTask(rows));
+            } finally {
+                rows.close();
+            }
+            return tasks;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error reading tasks", e);
+        }
+    }
+
+    /**
+     * Reads the columns shown in the list for all rows without creating any task, like the lazily
+     * loaded list of the app does when it is created.
+     * @return The {@link ListRows} in list order.
+     */
+    ListRows getListRows() {
+        try {
+            ResultSet rows = selectListRows.executeQuery();
+            ListRows listRows = new ListRows();
+            try {
+                while (rows.next()) {
+                    boolean done = rows.getInt(5) == 1;
+                    listRows.add(rows.getLong(1), rows.getLong(3), done,
+                            TaskListDiff.contentHash(rows.getString(2), rows.getLong(4), done));
+                }
+            } finally {
+                rows.close();
+            }
+            return listRows;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error reading the list rows", e);
+        }
+    }
+
+    /**
+     * Reads the tasks with the passed ids with a single query, like a page of the lazily loaded list.
+     * @param ids The ids of the tasks to read.
+     * @return The found tasks in any order.
+     */
+    List<Task> getTasks(final long[] ids) {
+        if (ids.length == 0) return new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM ")
+                .append(Schema.TaskEntry.TABLE_NAME).append(" WHERE ").append(Schema.TaskEntry._ID).append(" IN (");
+        for (int i = 0; i < ids.length; i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+
+        try {
+            //the app compiles the query for every page as well
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            try {
+                for (int i = 0; i < ids.length; i++) statement.setLong(i + 1, ids[i]);
+                ResultSet rows = statement.executeQuery();
+                List<Task> tasks = new ArrayList<>(ids.length);
+                try {
+                    while (rows.next()) tasks.add(readTask(rows));
+                } finally {
+                    rows.close();
+                }
+                return tasks;
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error reading " + ids.length + " task(s)", e);
+        }
+    }
+
+    @Override
+    public Task getTask(final long id) {
+        if (id < 1) throw new IllegalArgumentException("The passed id must be larger as 0.");
+        try {
+            select.setLong(1, id);
+            ResultSet rows = select.executeQuery();
+            try {
+                return rows.next() ? readTask(rows) : null;
+            } finally {
+                rows.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error reading task " + id, e);
+        }
+    }
+
+    @Override
+    public long save(final Task task) {
+        return writeAll(Collections.singletonList(task)) ? task.getId() : -1;
+    }
+
+    @Override
+    public boolean saveAll(final List<Task> tasks) {
+        return !tasks.isEmpty() && writeAll(tasks);
+    }
+
+    @Override
+    public boolean moveAll(final List<Task> tasks) {
+        //the app publishes moves differently, the rows are written the same way
+        return !tasks.isEmpty() && writeAll(tasks);
+    }
+
+    /**
+     * Spreads the list positions of the passed tasks evenly inside of a single transaction, like the
+     * app does if there is no free position left for a moved task.
+     * @param ids The ids of all tasks in list order, the task at index i gets the position i * GAP.
+     */
+    void rebalance(final long[] ids) {
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == Task.TRANSIENT) continue;
+                updateListPos.setLong(1, i * TaskOrder.GAP);
+                updateListPos.setLong(2, ids[i]);
+                updateListPos.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Error rebalancing " + ids.length + " task(s)", e);
+        }
+    }
+
+    @Override
+    public int deleteTask(final long id) {
+        if (id == Task.TRANSIENT) return 0;
+        try {
+            delete.setLong(1, id);
+            int count = delete.executeUpdate();
+            searchDelete.setLong(1, id);
+            searchDelete.executeUpdate();
+            connection.commit();
+            return count;
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Error deleting task " + id, e);
+        }
+    }
+
+    /**
+     * Writes the passed tasks inside of a single transaction and sets the ids of inserted tasks
+     * after it was committed.
+     * @param tasks The tasks to save and/or update.
+     * @return <code>true</code> if the transaction was committed.
+     */
+    private boolean writeAll(final List<Task> tasks) {
+
+        long[] rowIds = new long[tasks.size()];
+        try {
+            for (int i = 0; i < rowIds.length; i++) {
+                rowIds[i] = writeTask(tasks.get(i));
+                if (rowIds[i] == -1) {
+                    rollback();
+                    return false;
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Error writing tasks", e);
+        }
+
+        for (int i = 0; i < rowIds.length; i++) {
+            if (tasks.get(i).getId() == Task.TRANSIENT) tasks.get(i).setId(rowIds[i]);
+        }
+        return true;
+    }
+
+    private long writeTask(final Task task) throws SQLException {
+
+        if (task.getId() == Task.TRANSIENT) {
+            bindTask(insert, task);
+            insert.executeUpdate();
+            ResultSet keys = insert.getGeneratedKeys();
+            long rowId;
+            try {
+                rowId = keys.next() ? keys.getLong(1) : -1;
+            } finally {
+                keys.close();
+            }
+            if (rowId != -1) putSearchEntry(rowId, task);
+            return rowId;
+        }
+
+        bindTask(update, task);
+        update.setLong(Schema.TaskStatements.UPDATE_ARG_ID, task.getId());
+        if (update.executeUpdate() != 1) return -1;
+
+        //the notes can only have changed if the details were decoded
+        if (task.isDetailsLoaded()) {
+            putSearchEntry(task.getId(), task);
+        } else {
+            searchUpdateTitle.setString(1, task.getTitle());
+            searchUpdateTitle.setLong(2, task.getId());
+            searchUpdateTitle.executeUpdate();
+        }
+        return task.getId();
+    }
+
+    private void putSearchEntry(final long id, final Task task) throws SQLException {
+        searchDelete.setLong(1, id);
+        searchDelete.executeUpdate();
+        searchInsert.setLong(1, id);
+        searchInsert.setString(2, task.getTitle());
+        searchInsert.setString(3, task.getDetails().getNotes());
+        searchInsert.executeUpdate();
+    }
+
+    private static void bindTask(final PreparedStatement statement, final Task task) throws SQLException {
+        statement.setString(1, task.getTitle());
+        statement.setLong(2, task.getListPosition());
+        statement.setLong(3, task.getReminder() != null ? task.getReminder().getTime() : 0);
+        statement.setInt(4, task.isDone() ? 1 : 0);
+        statement.setString(5, task.getDetailsJson());
+    }
+
+    private static Task readTask(final ResultSet rows) throws SQLException {
+        return new Task(rows.getLong(1), rows.getString(2), rows.getLong(3), rows.getLong(4),
+                rows.getInt(5), rows.getString(6));
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error rolling back", e);
+        }
+    }
+
+    /**
+     * The columns of all rows read by {@link #getListRows()}, stored like the lazily loaded list of the app.
+     */
+    static final class ListRows {
+
+        long[] ids = new long[16];
+        long[] positions = new long[16];
+        boolean[] done = new boolean[16];
+        int[] hashes = new int[16];
+        int count = 0;
+
+        private void add(final long id, final long position, final boolean isDone, final int hash) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                positions = Arrays.copyOf(positions, count * 2);
+                done = Arrays.copyOf(done, count * 2);
+                hashes = Arrays.copyOf(hashes, count * 2);
+            }
+            ids[count] = id;
+            positions[count] = position;
+            done[count] = isDone;
+            hashes[count++] = hash;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error closing the database", e);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.Reminders;
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Measures selecting the next pending reminder from all tasks in memory, which is what the indexed
+ * query of the database avoids.
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class ReminderBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private List<Task> tasks;
+
+    @Setup
+    public void setUp() {
+        tasks = TaskFixtures.createTasks(TaskFixtures.createRows(size));
+    }
+
+    @Benchmark
+    public Task findNext() {
+        return findNext(tasks, TaskFixtures.NOW);
+    }
+
+    /**
+     * Returns the task with the earliest pending reminder after the passed time. This is the in-memory
+     * counterpart of the indexed query the database uses, every task is read once.
+     * @param tasks The tasks to search.
+     * @param after The time in milliseconds the reminder must be later than.
+     * @return The {@link Task} with the next reminder or <code>null</code> if there is none.
+     */
+    static Task findNext(final Iterable<Task> tasks, final long after) {
+        Task next = null;
+        long nextDueDate = Long.MAX_VALUE;
+        for (Task task : tasks) {
+            long dueDate = Reminders.getPendingDueDate(task);
+            if (dueDate > after && dueDate < nextDueDate) {
+                next = task;
+                nextDueDate = dueDate;
+            }
+        }
+        return next;
+    }
+
+}
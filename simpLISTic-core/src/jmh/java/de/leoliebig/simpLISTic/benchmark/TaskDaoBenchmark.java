@@ -0,0 +1,172 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskOrder;
+
+/**
+ * Measures the operations of the {@link de.leoliebig.simpLISTic.db.TaskDao} on a SQLite file with the
+ * schema of the app. Every invocation is sampled, so the results contain the median and the tail
+ * latency, the gc profiler configured in the build adds the allocated bytes per operation.
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class TaskDaoBenchmark {
+
+    //number of tasks written by a single saveAll
+    private static final int BATCH_SIZE = 50;
+    //number of tasks loaded by a single query of the lazily loaded list of the app
+    private static final int PAGE_SIZE = 64;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private File file;
+    private JdbcTaskDao dao;
+    //the seeded tasks in list order
+    private List<Task> tasks;
+    private Random random;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        file = TaskFixtures.createDatabaseFile();
+        dao = new JdbcTaskDao(file.getPath());
+
+        tasks = TaskFixtures.createTasks(TaskFixtures.createRows(size));
+        for (Task task : tasks) task.setId(Task.TRANSIENT);
+        if (!dao.saveAll(tasks)) throw new IllegalStateException("Could not seed " + size + " tasks");
+        random = new Random(TaskFixtures.SEED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dao.close();
+        TaskFixtures.deleteDatabaseFile(file);
+    }
+
+    /**
+     * Reads and creates all tasks, like scrolling through the whole list.
+     */
+    @Benchmark
+    public List<Task> getAll() {
+        return dao.getAll();
+    }
+
+    /**
+     * Reads the list columns of all rows and loads the first page, like opening the lazily loaded
+     * list of the app. The remaining tasks are only loaded while scrolling.
+     */
+    @Benchmark
+    public List<Task> getAllLazy() {
+        JdbcTaskDao.ListRows rows = dao.getListRows();
+        return dao.getTasks(Arrays.copyOf(rows.ids, Math.min(rows.count, PAGE_SIZE)));
+    }
+
+    @Benchmark
+    public Task getTask() {
+        return dao.getTask(randomTask().getId());
+    }
+
+    /**
+     * Checks or unchecks a single task.
+     */
+    @Benchmark
+    public long save() {
+        Task task = randomTask();
+        task.setDone(!task.isDone());
+        return dao.save(task);
+    }
+
+    /**
+     * Checks or unchecks a batch of tasks inside of one transaction.
+     */
+    @Benchmark
+    public boolean saveAll() {
+        List<Task> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Task task = randomTask();
+            task.setDone(!task.isDone());
+            batch.add(task);
+        }
+        return dao.saveAll(batch);
+    }
+
+    /**
+     * Deletes a task that was inserted before the invocation.
+     */
+    @Benchmark
+    public int deleteTask(final Victim victim) {
+        return dao.deleteTask(victim.id);
+    }
+
+    /**
+     * Drags a task to another position and persists the change. Only the moved task is written
+     * unless there is no gap left at the new position and the positions of the whole list are
+     * renumbered by a single update pass.
+     */
+    @Benchmark
+    public boolean reorder() {
+        int from = random.nextInt(tasks.size());
+        int to = random.nextInt(tasks.size());
+        Task task = tasks.remove(from);
+        tasks.add(to, task);
+
+        long position = TaskOrder.positionAt(tasks, to);
+        if (position == TaskOrder.NO_GAP) {
+            TaskOrder.rebalance(tasks);
+            long[] ids = new long[tasks.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = tasks.get(i).getId();
+            dao.rebalance(ids);
+            return true;
+        }
+        task.setListPosition(position);
+        return dao.moveAll(Collections.singletonList(task));
+    }
+
+    private Task randomTask() {
+        return tasks.get(random.nextInt(tasks.size()));
+    }
+
+    /**
+     * A task inserted for every invocation of {@link #deleteTask(Victim)}, the insert is not measured.
+     */
+    @State(Scope.Thread)
+    public static class Victim {
+
+        long id;
+
+        @Setup(Level.Invocation)
+        public void insert(final TaskDaoBenchmark benchmark) {
+            Task task = new Task("Victim");
+            //a single insert costs far more than the timer overhead of a per invocation setup
+            id = benchmark.dao.save(task);
+            if (id == -1) throw new IllegalStateException("Could not insert a task to delete");
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.leoliebig.simpLISTic.model.DetailAdapter;
+import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskOrder;
+
+/**
+ * Creates the tasks used by the benchmarks. The values are generated with a fixed seed, so every run
+ * and every commit measures the same data.
+ *
+ * @author info@leoliebig.de
+ */
+final class TaskFixtures {
+
+    static final long SEED = 42;
+    //reminders are spread over 30 days after this time
+    static final long NOW = 1444000000000L;
+    private static final long REMINDER_RANGE = 30L * 24 * 60 * 60 * 1000;
+
+    private TaskFixtures() {
+        //static helper
+    }
+
+    /**
+     * The columns of the tasks table as they are read from a cursor.
+     */
+    static final class Rows {
+
+        final long[] ids;
+        final String[] titles;
+        final long[] listPositions;
+        final long[] dueDates;
+        final int[] done;
+        final String[] detailsJson;
+
+        Rows(final int size) {
+            ids = new long[size];
+            titles = new String[size];
+            listPositions = new long[size];
+            dueDates = new long[size];
+            done = new int[size];
+            detailsJson = new String[size];
+        }
+
+        int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Creates the rows of the passed number of tasks, a third of them is done and half of them has a reminder.
+     * @param size The number of rows.
+     * @return The generated {@link Rows}.
+     */
+    static Rows createRows(final int size) {
+        Random random = new Random(SEED);
+        Rows rows = new Rows(size);
+        for (int i = 0; i < size; i++) {
+            rows.ids[i] = i + 1;
+            rows.titles[i] = "Task " + i + " " + Long.toString(random.nextLong(), 36);
+            rows.listPositions[i] = i * TaskOrder.GAP;
+            rows.dueDates[i] = random.nextBoolean() ? NOW + (long) (random.nextDouble() * REMINDER_RANGE) : 0;
+            rows.done[i] = random.nextInt(3) == 0 ? 1 : 0;
+            rows.detailsJson[i] = DetailAdapter.encode(createDetail(random, 64));
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the tasks of the passed rows in list order.
+     * @param rows The rows to create the tasks from.
+     * @return A new list with one {@link Task} per row.
+     */
+    static List<Task> createTasks(final Rows rows) {
+        List<Task> tasks = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            tasks.add(new Task(rows.ids[i], rows.titles[i], rows.listPositions[i], rows.dueDates[i],
+                    rows.done[i], rows.detailsJson[i]));
+        }
+        return tasks;
+    }
+
+    /**
+     * Creates details with notes of the passed length and a few web links.
+     * @param random The source of the generated values.
+     * @param notesLength The number of characters of the notes.
+     * @return The generated {@link Task.Detail}.
+     */
+    static Task.Detail createDetail(final Random random, final int notesLength) {
+        StringBuilder notes = new StringBuilder(notesLength);
+        while (notes.length() < notesLength) {
+            notes.append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36)).append(' ');
+        }
+        notes.setLength(notesLength);
+
+        Task.Detail detail = new Task.Detail(notes.toString());
+        detail.setRevision(random.nextInt(10));
+        List<String> webUris = new ArrayList<>();
+        for (int i = 0; i < 3; i++) webUris.add("https://example.com/" + Integer.toString(random.nextInt(), 36));
+        detail.setWebUris(webUris);
+        return detail;
+    }
+
+    /**
+     * Returns the path of a new temporary database file, the file itself is created by the driver.
+     * @return The path of a database file that does not exist yet.
+     * @throws IOException If no temporary file can be created.
+     */
+    static File createDatabaseFile() throws IOException {
+        File file = File.createTempFile("simpLISTic-benchmark", ".db");
+        if (!file.delete()) throw new IOException("Could not prepare " + file);
+        return file;
+    }
+
+    /**
+     * Deletes a database file created by {@link #createDatabaseFile()} and its write-ahead log.
+     * @param file The database file.
+     */
+    static void deleteDatabaseFile(final File file) {
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            File part = new File(file.getPath() + suffix);
+            if (part.exists() && !part.delete()) part.deleteOnExit();
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Measures creating tasks from the column values of a cursor, with and without decoding their details.
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class TaskHydrationBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private TaskFixtures.Rows rows;
+
+    @Setup
+    public void setUp() {
+        rows = TaskFixtures.createRows(size);
+    }
+
+    /**
+     * Creates the tasks like a list that only shows titles, the details stay encoded.
+     */
+    @Benchmark
+    public void hydrate(final Blackhole blackhole) {
+        for (int i = 0; i < rows.size(); i++) {
+            blackhole.consume(new Task(rows.ids[i], rows.titles[i], rows.listPositions[i], rows.dueDates[i],
+                    rows.done[i], rows.detailsJson[i]));
+        }
+    }
+
+    /**
+     * Creates the tasks and decodes all details, like the list did before the details were decoded lazily.
+     */
+    @Benchmark
+    public void hydrateWithDetails(final Blackhole blackhole) {
+        for (int i = 0; i < rows.size(); i++) {
+            Task task = new Task(rows.ids[i], rows.titles[i], rows.listPositions[i], rows.dueDates[i],
+                    rows.done[i], rows.detailsJson[i]);
+            blackhole.consume(task.getDetails());
+        }
+    }
+
+}
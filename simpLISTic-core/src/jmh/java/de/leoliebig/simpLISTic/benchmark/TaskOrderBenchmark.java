@@ -0,0 +1,74 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskOrder;
+
+/**
+ * Measures reordering tasks: moving a single task with a sparse position, which is the common case of
+ * a drag, and renumbering the whole list, which is needed once there is no gap left.
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class TaskOrderBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private List<Task> tasks;
+
+    @Setup
+    public void setUp() {
+        tasks = TaskFixtures.createTasks(TaskFixtures.createRows(size));
+    }
+
+    /**
+     * Moves the last task to the middle of the list and back.
+     */
+    @Benchmark
+    public long move() {
+        int middle = tasks.size() / 2;
+        Task task = tasks.remove(tasks.size() - 1);
+        tasks.add(middle, task);
+        long position = TaskOrder.positionAt(tasks, middle);
+
+        tasks.remove(middle);
+        tasks.add(task);
+        task.setListPosition(TaskOrder.positionAt(tasks, tasks.size() - 1));
+        return position;
+    }
+
+    /**
+     * Finds the insert index of a task by its position.
+     */
+    @Benchmark
+    public int indexFor() {
+        return TaskOrder.indexFor(tasks, tasks.get(tasks.size() / 3).getListPosition());
+    }
+
+    /**
+     * Renumbers the positions of all tasks.
+     */
+    @Benchmark
+    public List<Task> rebalance() {
+        TaskOrder.rebalance(tasks);
+        return tasks;
+    }
+
+}
@@ -0,0 +1,114 @@
+package de.leoliebig.simpLISTic.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Replays a fixed script of checking and unchecking tasks like a user working through the list. The
+ * script toggles {@value #TOGGLES} tasks chosen with {@link TaskFixtures#SEED}, so every run toggles the
+ * same tasks of the same data. Every toggle runs the main thread part of the app, setting the done state
+ * and copying the task for the write queue, and the pending tasks are written in one transaction after
+ * every {@value #TOGGLES_PER_WINDOW} toggles like the write window of the queue.
+ *
+ * <p>Rendering the list item is not part of the measurement, the frames of the app are recorded by its
+ * frame timer. Every invocation is sampled, so the results contain the median and the tail latency.</p>
+ *
+ * @author info@leoliebig.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class TaskToggleBenchmark {
+
+    //number of toggles of the script
+    private static final int TOGGLES = 100;
+    //number of toggles collected by one write window of the queue
+    private static final int TOGGLES_PER_WINDOW = 10;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private File file;
+    private JdbcTaskDao dao;
+    //the seeded tasks in list order
+    private List<Task> tasks;
+    //the indices of the toggled tasks in the order of the script
+    private int[] script;
+    //the next toggle of the script for toggle()
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        file = TaskFixtures.createDatabaseFile();
+        dao = new JdbcTaskDao(file.getPath());
+
+        tasks = TaskFixtures.createTasks(TaskFixtures.createRows(size));
+        for (Task task : tasks) task.setId(Task.TRANSIENT);
+        if (!dao.saveAll(tasks)) throw new IllegalStateException("Could not seed " + size + " tasks");
+
+        Random random = new Random(TaskFixtures.SEED);
+        script = new int[TOGGLES];
+        for (int i = 0; i < TOGGLES; i++) script[i] = random.nextInt(size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dao.close();
+        TaskFixtures.deleteDatabaseFile(file);
+    }
+
+    /**
+     * Runs the main thread part of a single toggle of the script, the next invocation runs the next toggle.
+     */
+    @Benchmark
+    public Task toggle() {
+        Task task = tasks.get(script[next]);
+        next = (next + 1) % TOGGLES;
+        task.setDone(!task.isDone());
+        //the write queue keeps a copy, so later changes of the shown task do not change the pending write
+        return new Task(task);
+    }
+
+    /**
+     * Runs the whole script including the writes, toggles of the same task in one window are written once.
+     */
+    @Benchmark
+    public int toggleScript() {
+        Map<Long, Task> pending = new LinkedHashMap<>();
+        int written = 0;
+        for (int i = 0; i < TOGGLES; i++) {
+            Task task = tasks.get(script[i]);
+            task.setDone(!task.isDone());
+            pending.put(task.getId(), new Task(task));
+
+            if ((i + 1) % TOGGLES_PER_WINDOW == 0) {
+                if (!dao.saveAll(new ArrayList<>(pending.values()))) throw new IllegalStateException("Could not write the toggled tasks");
+                written += pending.size();
+                pending.clear();
+            }
+        }
+        return written;
+    }
+
+}
@@ -0,0 +1,145 @@
+package de.leoliebig.simpLISTic.db;
+
+/**
+ * A container for constants that defines the schema for the tasks database.
+ *
+ * @author info@leoliebig.de
+ */
+public abstract class Schema {
+
+    /**
+     * The current version of the schema. Every increment needs a step in the {@code Migrations} of the app.
+     * <ul>
+     *     <li>1: tasks table</li>
+     *     <li>2: indexes for sorting by list position and for pending reminders</li>
+     *     <li>3: full-text search table for titles and notes</li>
+     * </ul>
+     */
+    public static final int DATABASE_VERSION = 3;
+    public static final String DATABASE_NAME = "Tasks.db";
+
+    public static abstract class TagTable {
+        public static final String SQL_CREATE_ENTRIES =
+                "CREATE TABLE " + TaskEntry.TABLE_NAME +
+                        " (" +
+                        TaskEntry._ID + " integer primary key autoincrement," +
+                        TaskEntry.COLUMN_TITLE + " text not null," +
+                        TaskEntry.COLUMN_LIST_POS + " integer default 0," +
+                        TaskEntry.COLUMN_DUE_DATE + " integer default 0," +
+                        TaskEntry.COLUMN_DONE + " integer default 0," +
+                        TaskEntry.COLUMN_JSON_DETAIL + " text" +
+                        " );";
+        public static final String SQL_DELETE_ENTRIES =
+                "DROP TABLE IF EXISTS " + TaskEntry.TABLE_NAME;
+    }
+
+    public static abstract class TaskIndex {
+        public static final String LIST_POS = "tasks_listpos_idx";
+        public static final String DONE_LIST_POS = "tasks_done_listpos_idx";
+        public static final String PENDING_DUE_DATE = "tasks_pending_duedate_idx";
+
+        public static final String SQL_CREATE_LIST_POS =
+                "CREATE INDEX IF NOT EXISTS " + LIST_POS + " ON " + TaskEntry.TABLE_NAME +
+                        " (" + TaskEntry.COLUMN_LIST_POS + ");";
+        public static final String SQL_CREATE_DONE_LIST_POS =
+                "CREATE INDEX IF NOT EXISTS " + DONE_LIST_POS + " ON " + TaskEntry.TABLE_NAME +
+                        " (" + TaskEntry.COLUMN_DONE + "," + TaskEntry.COLUMN_LIST_POS + ");";
+        //partial indexes need SQLite 3.8.0, which is available since Lollipop
+        public static final String SQL_CREATE_PENDING_DUE_DATE =
+                "CREATE INDEX IF NOT EXISTS " + PENDING_DUE_DATE + " ON " + TaskEntry.TABLE_NAME +
+                        " (" + TaskEntry.COLUMN_DUE_DATE + ") WHERE " + TaskEntry.COLUMN_DONE + " = 0;";
+        //fallback for older platforms, covers the same queries
+        public static final String SQL_CREATE_PENDING_DUE_DATE_COMPAT =
+                "CREATE INDEX IF NOT EXISTS " + PENDING_DUE_DATE + " ON " + TaskEntry.TABLE_NAME +
+                        " (" + TaskEntry.COLUMN_DONE + "," + TaskEntry.COLUMN_DUE_DATE + ");";
+    }
+
+    public static abstract class SearchTable {
+        //unicode61 and prefix indexes need SQLite 3.7.13, which is available since Lollipop
+        public static final String SQL_CREATE_ENTRIES =
+                "CREATE VIRTUAL TABLE " + SearchEntry.TABLE_NAME + " USING fts4(" +
+                        SearchEntry.COLUMN_TITLE + "," +
+                        SearchEntry.COLUMN_NOTES + "," +
+                        "tokenize=unicode61," +
+                        "prefix=\"2,3\"" +
+                        ");";
+        //fallback for older platforms
+        public static final String SQL_CREATE_ENTRIES_COMPAT =
+                "CREATE VIRTUAL TABLE " + SearchEntry.TABLE_NAME + " USING fts4(" +
+                        SearchEntry.COLUMN_TITLE + "," +
+                        SearchEntry.COLUMN_NOTES +
+                        ");";
+        public static final String SQL_DELETE_ENTRIES =
+                "DROP TABLE IF EXISTS " + SearchEntry.TABLE_NAME;
+    }
+
+    /**
+     * The statements the batch writer of the app compiles once per connection. The JDBC benchmarks
+     * prepare the same strings, so both write the same rows.
+     */
+    public static abstract class TaskStatements {
+        public static final String SQL_INSERT =
+                "INSERT INTO " + TaskEntry.TABLE_NAME + " (" +
+                        TaskEntry.COLUMN_TITLE + "," +
+                        TaskEntry.COLUMN_LIST_POS + "," +
+                        TaskEntry.COLUMN_DUE_DATE + "," +
+                        TaskEntry.COLUMN_DONE + "," +
+                        TaskEntry.COLUMN_JSON_DETAIL +
+                        ") VALUES (?,?,?,?,?)";
+        public static final String SQL_UPDATE =
+                "UPDATE " + TaskEntry.TABLE_NAME + " SET " +
+                        TaskEntry.COLUMN_TITLE + "=?," +
+                        TaskEntry.COLUMN_LIST_POS + "=?," +
+                        TaskEntry.COLUMN_DUE_DATE + "=?," +
+                        TaskEntry.COLUMN_DONE + "=?," +
+                        TaskEntry.COLUMN_JSON_DETAIL + "=?" +
+                        " WHERE " + TaskEntry._ID + "=?";
+        //index of the primary key argument of the update statement
+        public static final int UPDATE_ARG_ID = 6;
+        public static final String SQL_UPDATE_LIST_POS =
+                "UPDATE " + TaskEntry.TABLE_NAME + " SET " +
+                        TaskEntry.COLUMN_LIST_POS + "=?" +
+                        " WHERE " + TaskEntry._ID + "=?";
+    }
+
+    /**
+     * The statements that keep the full-text search table in sync with the tasks table.
+     */
+    public static abstract class SearchStatements {
+        public static final String SQL_INSERT =
+                "INSERT INTO " + SearchEntry.TABLE_NAME + " (" +
+                        SearchEntry.COLUMN_DOC_ID + "," +
+                        SearchEntry.COLUMN_TITLE + "," +
+                        SearchEntry.COLUMN_NOTES +
+                        ") VALUES (?,?,?)";
+        public static final String SQL_UPDATE_TITLE =
+                "UPDATE " + SearchEntry.TABLE_NAME + " SET " +
+                        SearchEntry.COLUMN_TITLE + "=?" +
+                        " WHERE " + SearchEntry.COLUMN_DOC_ID + "=?";
+        public static final String SQL_DELETE =
+                "DELETE FROM " + SearchEntry.TABLE_NAME +
+                        " WHERE " + SearchEntry.COLUMN_DOC_ID + "=?";
+    }
+
+    /**
+     * The full-text search table, the docid of every row is the id of the task.
+     */
+    public static abstract class SearchEntry {
+        public static final String TABLE_NAME = "tasks_fts";
+        public static final String COLUMN_DOC_ID = "docid";
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_NOTES = "notes";
+    }
+
+    public static abstract class TaskEntry {
+        //the primary key column expected by Android, same as BaseColumns._ID
+        public static final String _ID = "_id";
+        public static final String TABLE_NAME = "tasks";
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_LIST_POS = "listpos";
+        public static final String COLUMN_DUE_DATE = "duedate";
+        public static final String COLUMN_DONE = "done";
+        public static final String COLUMN_JSON_DETAIL = "details";
+    }
+
+}
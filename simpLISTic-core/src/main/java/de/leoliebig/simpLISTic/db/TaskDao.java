@@ -0,0 +1,58 @@
+package de.leoliebig.simpLISTic.db;
+
+import java.util.List;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * The synchronous operations for reading and writing tasks. The app implements them with the
+ * Android SQLite API, the benchmarks of this module with JDBC on the same {@link Schema}, so the
+ * data access can be measured on the JVM.
+ *
+ * @author info@leoliebig.de
+ */
+public interface TaskDao {
+
+    /**
+     * Fetches all tasks sorted by their list position. Returned lists that implement
+     * {@link java.io.Closeable} must be closed if they are not needed anymore.
+     * @return A list of all tasks or an empty list if there are none.
+     */
+    List<Task> getAll();
+
+    /**
+     * Returns the {@link Task} associated to the passed id.
+     * @param id The id of the {@link Task}, must be larger as 0.
+     * @return The {@link Task} or <code>null</code> if not found.
+     */
+    Task getTask(long id);
+
+    /**
+     * Saves or updates the passed {@link Task}, inserted tasks get their new id.
+     * @param task The {@link Task} to store.
+     * @return The row id of the entry or -1 if the insert or update failed.
+     */
+    long save(Task task);
+
+    /**
+     * Saves or/and updates all passed tasks inside of a single transaction.
+     * @param tasks The tasks to save and/or update.
+     * @return <code>true</code> if all tasks were saved and <code>false</code> in case of errors.
+     */
+    boolean saveAll(List<Task> tasks);
+
+    /**
+     * Updates the list positions of the passed tasks inside of a single transaction.
+     * @param tasks The moved tasks.
+     * @return <code>true</code> if all tasks were saved and <code>false</code> in case of errors.
+     */
+    boolean moveAll(List<Task> tasks);
+
+    /**
+     * Deletes the {@link Task} with the passed id.
+     * @param id The id of the {@link Task}.
+     * @return The number of deleted rows, should be 1.
+     */
+    int deleteTask(long id);
+
+}
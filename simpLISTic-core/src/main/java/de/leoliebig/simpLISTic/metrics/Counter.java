@@ -0,0 +1,47 @@
+package de.leoliebig.simpLISTic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonic counter of the {@link Metrics} registry. Updates are lock-free and ignored while the
+ * registry is disabled.
+ *
+ * @author info@leoliebig.de
+ */
+public final class Counter {
+
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    Counter(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Increments the counter by one.
+     */
+    public void inc() {
+        if (Metrics.enabled) value.incrementAndGet();
+    }
+
+    /**
+     * Increments the counter by the passed amount.
+     * @param amount The amount to add.
+     */
+    public void add(final long amount) {
+        if (Metrics.enabled) value.addAndGet(amount);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+
+}
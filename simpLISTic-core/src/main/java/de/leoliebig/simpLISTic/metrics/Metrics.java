@@ -0,0 +1,155 @@
+package de.leoliebig.simpLISTic.metrics;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A registry of {@link Counter}s and {@link Timer}s for the hot paths of the app. Metrics are looked up
+ * once by name and kept in static fields by the instrumented classes, so recording does not need a
+ * lookup, a lock or an allocation. While the registry is disabled recording costs a single volatile read.
+ *
+ * <p>The registry can be dumped as text for humans or as JSON for collecting the percentiles of
+ * field devices.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public final class Metrics {
+
+    //the percentiles of the dumps
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    static volatile boolean enabled = false;
+
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private Metrics() {
+        //static helper
+    }
+
+    /**
+     * Enables or disables recording, the recorded values are kept.
+     * @param enabled <code>true</code> if the metrics should be recorded.
+     */
+    public static void setEnabled(final boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the {@link Counter} with the passed name, it is created on the first call.
+     * @param name The name of the counter, e.g. <code>db.cache.hit</code>.
+     */
+    public static Counter counter(final String name) {
+        Counter counter = counters.get(name);
+        if (counter != null) return counter;
+        counter = new Counter(name);
+        Counter previous = counters.putIfAbsent(name, counter);
+        return previous != null ? previous : counter;
+    }
+
+    /**
+     * Returns the {@link Timer} with the passed name, it is created on the first call.
+     * @param name The name of the timer, e.g. <code>db.getAll</code>.
+     */
+    public static Timer timer(final String name) {
+        Timer timer = timers.get(name);
+        if (timer != null) return timer;
+        timer = new Timer(name);
+        Timer previous = timers.putIfAbsent(name, timer);
+        return previous != null ? previous : timer;
+    }
+
+    /**
+     * Sets all counters and timers back to zero.
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) counter.reset();
+        for (Timer timer : timers.values()) timer.reset();
+    }
+
+    /**
+     * Returns all metrics sorted by name as a human readable table. Durations are in microseconds.
+     */
+    public static String dumpText() {
+
+        StringBuilder text = new StringBuilder();
+        text.append("Metrics (").append(enabled ? "enabled" : "disabled").append(")\n");
+
+        text.append("Counters\n");
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            text.append(String.format(Locale.US, "  %-32s %10d%n", counter.getName(), counter.get()));
+        }
+
+        text.append(String.format(Locale.US, "Timers [us]%34s %10s %10s %10s %10s %10s%n",
+                "count", "mean", "p50", "p90", "p99", "max"));
+        for (Timer timer : new TreeMap<>(timers).values()) {
+            long count = timer.getCount();
+            text.append(String.format(Locale.US, "  %-32s %10d %10d", timer.getName(), count,
+                    count > 0 ? toMicros(timer.getTotalNanos() / count) : 0));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(Locale.US, " %10d", toMicros(timer.getPercentileNanos(percentile))));
+            }
+            text.append(String.format(Locale.US, " %10d%n", toMicros(timer.getMaxNanos())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns all metrics as a JSON object with a <code>counters</code> and a <code>timers</code> object,
+     * both map the names to the values. Durations are in microseconds.
+     */
+    public static String dumpJson() {
+
+        StringWriter json = new StringWriter();
+        JsonWriter out = new JsonWriter(json);
+        try {
+            out.beginObject();
+            out.name("enabled").value(enabled);
+
+            out.name("counters").beginObject();
+            for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+                out.name(entry.getKey()).value(entry.getValue().get());
+            }
+            out.endObject();
+
+            out.name("timers").beginObject();
+            for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+                Timer timer = entry.getValue();
+                long count = timer.getCount();
+                out.name(entry.getKey()).beginObject();
+                out.name("count").value(count);
+                out.name("mean").value(count > 0 ? toMicros(timer.getTotalNanos() / count) : 0);
+                for (double percentile : PERCENTILES) {
+                    out.name("p" + (int) percentile).value(toMicros(timer.getPercentileNanos(percentile)));
+                }
+                out.name("max").value(toMicros(timer.getMaxNanos()));
+                out.endObject();
+            }
+            out.endObject();
+
+            out.endObject();
+            out.close();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return json.toString();
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
@@ -0,0 +1,132 @@
+package de.leoliebig.simpLISTic.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations of the {@link Metrics} registry in a histogram with fixed buckets. Recording is
+ * lock-free and does not allocate, percentiles are estimated from the buckets when they are read.
+ *
+ * <p>Usage, the returned start time is ignored by {@link #stop(long)} if the registry is disabled:</p>
+ * <pre>
+ * long start = TIMER.start();
+ * try {
+ *     ...
+ * } finally {
+ *     TIMER.stop(start);
+ * }
+ * </pre>
+ *
+ * @author info@leoliebig.de
+ */
+public final class Timer {
+
+    /** The start time returned while the registry is disabled. */
+    static final long NOT_STARTED = Long.MIN_VALUE;
+
+    //upper bounds of the buckets in microseconds, larger durations are counted in an extra bucket
+    private static final long[] BOUNDS_MICROS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500,
+            1000, 2000, 5000, 10000, 16000, 20000, 50000, 100000, 200000, 500000,
+            1000000, 2000000, 5000000
+    };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_MICROS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) BOUNDS_NANOS[i] = TimeUnit.MICROSECONDS.toNanos(BOUNDS_MICROS[i]);
+    }
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    Timer(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the start time of a measurement.
+     * @return The current time in nanoseconds or a marker that is ignored by {@link #stop(long)} if the
+     * registry is disabled.
+     */
+    public long start() {
+        return Metrics.enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Records the time since the passed start time.
+     * @param start The value returned by {@link #start()}.
+     */
+    public void stop(final long start) {
+        if (start != NOT_STARTED) record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records a single duration.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(final long nanos) {
+
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) bucket++;
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations. The result is the upper bound of the bucket that
+     * contains the percentile, but never more than the maximum. Concurrent updates may not be contained.
+     * @param percentile The percentile between 0 and 100.
+     * @return The estimated duration in nanoseconds or 0 if nothing was recorded.
+     */
+    public long getPercentileNanos(final double percentile) {
+
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long max = maxNanos.get();
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(BOUNDS_NANOS[i], max);
+        }
+        return max;
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+}
@@ -0,0 +1,147 @@
+package de.leoliebig.simpLISTic.model;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.simpLISTic.metrics.Timer;
+
+/**
+ * Hand written streaming {@link TypeAdapter} for {@link Task.Detail} objects. It reads and writes the
+ * JSON representation stored in the database without reflection and stays compatible with the format
+ * of the reflective Gson serialization. Unknown names are skipped, so details written by newer versions
+ * can always be read.
+ *
+ * @author info@leoliebig.de
+ */
+public class DetailAdapter extends TypeAdapter<Task.Detail> {
+
+    static final String NAME_NOTES = "notes";
+    static final String NAME_REVISION = "revision";
+    static final String NAME_IMAGE_URI = "imageUri";
+    static final String NAME_WEB_URIS = "webUris";
+
+    private static final DetailAdapter INSTANCE = new DetailAdapter();
+
+    private static final Timer TIMER_DECODE = Metrics.timer("detail.decode");
+
+    /**
+     * Decodes the passed JSON representation.
+     * @param json A JSON object as written by {@link #encode(Task.Detail)} or <code>null</code>.
+     * @return The decoded {@link Task.Detail} or <code>null</code> if the passed string was <code>null</code>.
+     * @throws JsonSyntaxException If the passed string is not a valid representation.
+     */
+    public static Task.Detail decode(final String json) {
+        if (json == null) return null;
+        long start = TIMER_DECODE.start();
+        try {
+            return INSTANCE.read(new JsonReader(new StringReader(json)));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } finally {
+            TIMER_DECODE.stop(start);
+        }
+    }
+
+    /**
+     * Encodes the passed details into their JSON representation.
+     * @param detail The {@link Task.Detail} to encode.
+     * @return A string with a JSON object.
+     */
+    public static String encode(final Task.Detail detail) {
+        StringWriter stringWriter = new StringWriter();
+        try {
+            INSTANCE.write(new JsonWriter(stringWriter), detail);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    @Override
+    public void write(JsonWriter out, Task.Detail detail) throws IOException {
+
+        if (detail == null) {
+            out.nullValue();
+            return;
+        }
+
+        //null values and defaults are omitted like in the reflective serialization
+        out.beginObject();
+        if (detail.getNotes() != null) out.name(NAME_NOTES).value(detail.getNotes());
+        if (detail.getRevision() != 0) out.name(NAME_REVISION).value(detail.getRevision());
+        if (detail.getImageUri() != null) out.name(NAME_IMAGE_URI).value(detail.getImageUri());
+        if (detail.getWebUris() != null) {
+            out.name(NAME_WEB_URIS).beginArray();
+            for (String uri : detail.getWebUris()) out.value(uri);
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Task.Detail read(JsonReader in) throws IOException {
+
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        Task.Detail detail = new Task.Detail();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case NAME_NOTES:
+                    detail.setNotes(nextStringOrNull(in));
+                    break;
+                case NAME_REVISION:
+                    detail.setRevision(in.nextInt());
+                    break;
+                case NAME_IMAGE_URI:
+                    detail.setImageUri(nextStringOrNull(in));
+                    break;
+                case NAME_WEB_URIS:
+                    detail.setWebUris(nextStringList(in));
+                    break;
+                default:
+                    //written by a newer version
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return detail;
+    }
+
+    private static String nextStringOrNull(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static List<String> nextStringList(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) values.add(nextStringOrNull(in));
+        in.endArray();
+        return values;
+    }
+
+}
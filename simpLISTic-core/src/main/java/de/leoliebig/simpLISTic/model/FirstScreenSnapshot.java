@@ -0,0 +1,109 @@
+package de.leoliebig.simpLISTic.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes the first tasks of the list into a compact binary snapshot, so they can be shown right after
+ * a cold start before the database was opened. Only the values shown by a list item and compared by
+ * {@link TaskListDiff} are stored, the details are not part of the snapshot.
+ *
+ * <p>Tasks read from a snapshot are only meant for displaying them until the list was loaded from the
+ * database, they must never be written since their details are empty.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public final class FirstScreenSnapshot {
+
+    /** The number of tasks stored by default, more than a tablet shows at once. */
+    public static final int DEFAULT_SIZE = 32;
+
+    /** The maximum number of tasks of a snapshot, guards against allocations for corrupt files. */
+    public static final int MAX_SIZE = 1024;
+
+    private static final int MAGIC = 0x534c5354;
+    private static final int VERSION = 1;
+    //longer titles are cut, a list item only shows a single line
+    private static final int MAX_TITLE_LENGTH = 256;
+
+    private FirstScreenSnapshot() {
+        //static helper
+    }
+
+    /**
+     * Encodes the first tasks of the passed list.
+     * @param tasks The tasks sorted by their list position.
+     * @param limit The maximum number of stored tasks, at most {@link #MAX_SIZE}.
+     * @param excludeDone <code>true</code> if done tasks are hidden and should not be stored.
+     * @return The encoded snapshot.
+     */
+    public static byte[] encode(final List<Task> tasks, final int limit, final boolean excludeDone) {
+
+        if (limit < 0 || limit > MAX_SIZE) throw new IllegalArgumentException("Invalid limit: " + limit);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(limit * 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            List<Task> stored = new ArrayList<>(limit);
+            //indexed loop, the list may create its tasks lazily
+            for (int i = 0; i < tasks.size() && stored.size() < limit; i++) {
+                Task task = tasks.get(i);
+                if (!excludeDone || !task.isDone()) stored.add(task);
+            }
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(stored.size());
+            for (Task task : stored) {
+                String title = task.getTitle() != null ? task.getTitle() : "";
+                if (title.length() > MAX_TITLE_LENGTH) {
+                    //do not split a surrogate pair
+                    int end = Character.isHighSurrogate(title.charAt(MAX_TITLE_LENGTH - 1)) ? MAX_TITLE_LENGTH - 1 : MAX_TITLE_LENGTH;
+                    title = title.substring(0, end);
+                }
+                out.writeLong(task.getId());
+                out.writeLong(task.getListPosition());
+                out.writeLong(task.getReminder() != null ? task.getReminder().getTime() : 0);
+                out.writeBoolean(task.isDone());
+                out.writeUTF(title);
+            }
+            out.flush();
+        } catch (IOException e) {
+            //not thrown by an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the tasks of an encoded snapshot.
+     * @param in The stream to read the snapshot from, it is not closed.
+     * @return The tasks of the snapshot in list order, their details are empty.
+     * @throws IOException If the stream can not be read or does not contain a snapshot of this version.
+     */
+    public static List<Task> decode(final InputStream in) throws IOException {
+
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readByte() != VERSION) throw new IOException("Unknown snapshot format");
+
+        int count = data.readInt();
+        if (count < 0 || count > MAX_SIZE) throw new IOException("Invalid number of tasks: " + count);
+
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = data.readLong();
+            long listPosition = data.readLong();
+            long dueDate = data.readLong();
+            boolean done = data.readBoolean();
+            String title = data.readUTF();
+            tasks.add(new Task(id, title, listPosition, dueDate, done ? 1 : 0, null));
+        }
+        return tasks;
+    }
+
+}
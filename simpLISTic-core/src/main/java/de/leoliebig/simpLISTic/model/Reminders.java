@@ -0,0 +1,73 @@
+package de.leoliebig.simpLISTic.model;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Computes the times used for scheduling the reminders of tasks. A reminder is pending as long as its
+ * task is not done, it is delivered once its due date has passed.
+ *
+ * @author info@leoliebig.de
+ */
+public final class Reminders {
+
+    /** Indicates that a task has no pending reminder. */
+    public static final long NONE = 0;
+
+    /** The hour of the day of the default reminder date. */
+    public static final int DEFAULT_HOUR = 9;
+
+    private Reminders() {
+        //static helper
+    }
+
+    /**
+     * Returns the default reminder date for a new reminder, which is the next day at {@link #DEFAULT_HOUR}.
+     * @param now The current time.
+     * @return The default reminder date in the default time zone.
+     */
+    public static Date getDefaultDate(final Date now) {
+        Calendar c = Calendar.getInstance();
+        c.setTime(now);
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        c.set(Calendar.HOUR_OF_DAY, DEFAULT_HOUR);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c.getTime();
+    }
+
+    /**
+     * Returns the due date of the reminder of the passed task if it is still pending.
+     * @param task The {@link Task} to check.
+     * @return The due date in milliseconds or {@link #NONE} if the task is done or has no reminder.
+     */
+    public static long getPendingDueDate(final Task task) {
+        if (task.isDone() || task.getReminder() == null) return NONE;
+        return task.getReminder().getTime();
+    }
+
+    /**
+     * Returns whether a reminder has to be armed instead of the currently armed one.
+     * @param dueDate The due date of the reminder or {@link #NONE}.
+     * @param armedDueDate The due date of the armed reminder or {@link #NONE} if no reminder is armed.
+     * @param deliveredUntil The time until which all reminders were delivered.
+     * @return <code>true</code> if the reminder was not delivered yet and is due before the armed one.
+     */
+    public static boolean precedes(final long dueDate, final long armedDueDate, final long deliveredUntil) {
+        return dueDate > deliveredUntil && (armedDueDate == NONE || dueDate < armedDueDate);
+    }
+
+    /**
+     * Returns the time the alarm for a reminder has to be triggered. Deliveries are at least the passed
+     * window apart, so reminders that become due within the window are delivered together at its end.
+     * @param dueDate The due date of the next reminder.
+     * @param lastDelivery The time of the last delivery or 0 if nothing was delivered yet.
+     * @param window The minimum time between two deliveries in milliseconds.
+     * @return The trigger time in milliseconds.
+     */
+    public static long getTriggerTime(final long dueDate, final long lastDelivery, final long window) {
+        return lastDelivery > 0 ? Math.max(dueDate, lastDelivery + window) : dueDate;
+    }
+
+}
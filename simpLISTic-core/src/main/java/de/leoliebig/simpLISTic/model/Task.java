@@ -0,0 +1,254 @@
+package de.leoliebig.simpLISTic.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data object representing a single task.
+ *
+ * @author info@leoliebig.de
+ */
+public class Task {
+
+    public static final int TRANSIENT = -1;
+
+    private long id = TRANSIENT;
+    private long listPosition = 0;
+    private String title;
+    private Date reminder = null;
+    private boolean done = false;
+    //decoded lazily from detailsJson by getDetails()
+    private Detail details = null;
+    private String detailsJson = null;
+
+    /**
+     * Creates a new instance with the passed title.
+     * @param title The title of the task.
+     */
+    public Task(String title) {
+        this.title = title;
+        this.details = new Detail();
+    }
+
+    /**
+     * Creates a new instance initialized with the passed arguments.
+     * @param id The id of the task as used as primary key in the database.
+     * @param title The title of the task.
+     * @param listPosition The sparse ordering key of the task in the list GUI component, see {@link TaskOrder}.
+     * @param dateInMillis The due date in milliseconds.The value is the number of milliseconds since Jan. 1, 1970, midnight GMT.
+     * @param doneInt 1 if the task is done, otherwise 0.
+     * @param detailsJson A string with a JSON representation of the {@link Task.Detail} object for this task.
+     *                    It is not decoded before {@link #getDetails()} is called.
+     */
+    public Task(long id, String title, long listPosition, long dateInMillis, int doneInt, final String detailsJson) {
+        this.listPosition = listPosition;
+        this.title = title;
+        this.id = id;
+        this.reminder = null;
+        if(dateInMillis > 0) reminder = new Date(dateInMillis);
+        this.done = false;
+        if(doneInt == 1) this.done = true;
+
+        if(detailsJson != null && !detailsJson.isEmpty()){
+            this.detailsJson = detailsJson;
+        }
+        else{
+            //rows written without details
+            this.details = new Detail();
+        }
+
+    }
+
+    /**
+     * Creates a copy of the passed task. Decoded details are copied field by field, details that were
+     * not decoded yet are copied without decoding them.
+     * @param other The {@link Task} to copy.
+     */
+    public Task(final Task other) {
+        this.id = other.id;
+        this.listPosition = other.listPosition;
+        this.title = other.title;
+        if(other.reminder != null) this.reminder = new Date(other.reminder.getTime());
+        this.done = other.done;
+        if(other.details != null) this.details = new Detail(other.details);
+        else this.detailsJson = other.detailsJson;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Date getReminder() {
+        return reminder;
+    }
+
+    public void setReminder(Date reminder) {
+        this.reminder = reminder;
+    }
+
+    public long getListPosition() {
+        return listPosition;
+    }
+
+    public void setListPosition(long listPosition) {
+        this.listPosition = listPosition;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    /**
+     * Returns the details of the task. They are decoded from their JSON representation
+     * on the first call, a stored JSON <code>null</code> is returned as empty details.
+     * @return The {@link Task.Detail} object of this task, never <code>null</code>.
+     */
+    public Detail getDetails() {
+        if(details == null){
+            details = DetailAdapter.decode(detailsJson);
+            if(details == null) details = new Detail();
+            detailsJson = null;
+        }
+        return details;
+    }
+
+    /**
+     * Sets the details of the task.
+     * @param details The new {@link Task.Detail} object, <code>null</code> is replaced by empty details.
+     */
+    public void setDetails(Detail details) {
+        this.details = details != null ? details : new Detail();
+        this.detailsJson = null;
+    }
+
+    /**
+     * Returns whether the details were decoded or set since the task was read from the database.
+     * @return <code>false</code> if the details can not have been changed, otherwise <code>true</code>.
+     */
+    public boolean isDetailsLoaded() {
+        return details != null;
+    }
+
+    /**
+     * Returns the JSON representation of the details for storing them in the database. If the
+     * details were never accessed the original string is returned without encoding it again.
+     * @return A string with a JSON representation of the {@link Task.Detail} object for this task.
+     */
+    public String getDetailsJson() {
+        if(details == null) return detailsJson;
+        return DetailAdapter.encode(details);
+    }
+
+    /**
+     * Sets the id of the task, is called by the database after a transient task was inserted.
+     * @param id The row id of the task.
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the id of the task. If the id is {@link Task#TRANSIENT} the task
+     * was not persisted yet.
+     * @return An integer > 0 or {@link Task#TRANSIENT}.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Data object representing the details of a task. The data of this object is store
+     * as a schema-less JSON representation in the database. Therefore it should only contain
+     * data that does not need to be indexed or sorted via the DBMS. It is encoded and decoded
+     * by the {@link DetailAdapter}, new fields have to be added there as well.
+     */
+    public static class Detail{
+
+        private String notes;
+        private int revision = 0;
+        private String imageUri;
+        private List<String> webUris;
+
+        public Detail() {
+            this.notes = "";
+        }
+
+        public Detail(String notes) {
+            this.notes = notes;
+        }
+
+        /**
+         * Creates a copy of the passed details.
+         * @param other The {@link Detail} object to copy.
+         */
+        public Detail(final Detail other) {
+            this.notes = other.notes;
+            this.revision = other.revision;
+            this.imageUri = other.imageUri;
+            if(other.webUris != null) this.webUris = new ArrayList<>(other.webUris);
+        }
+
+        public String getNotes() {
+            return notes;
+        }
+
+        public void setNotes(String notes) {
+            this.notes = notes;
+        }
+
+        public int getRevision() {
+            return revision;
+        }
+
+        public void setRevision(int revision) {
+            this.revision = revision;
+        }
+
+        public String getImageUri() {
+            return imageUri;
+        }
+
+        public void setImageUri(String imageUri) {
+            this.imageUri = imageUri;
+        }
+
+        public List<String> getWebUris() {
+            return webUris;
+        }
+
+        public void setWebUris(List<String> webUris) {
+            this.webUris = webUris;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Detail detail = (Detail) o;
+            return revision == detail.revision
+                    && (notes != null ? notes.equals(detail.notes) : detail.notes == null)
+                    && (imageUri != null ? imageUri.equals(detail.imageUri) : detail.imageUri == null)
+                    && (webUris != null ? webUris.equals(detail.webUris) : detail.webUris == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = notes != null ? notes.hashCode() : 0;
+            result = 31 * result + revision;
+            result = 31 * result + (imageUri != null ? imageUri.hashCode() : 0);
+            result = 31 * result + (webUris != null ? webUris.hashCode() : 0);
+            return result;
+        }
+    }
+
+}
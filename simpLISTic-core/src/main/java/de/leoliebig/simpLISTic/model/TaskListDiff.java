@@ -0,0 +1,330 @@
+package de.leoliebig.simpLISTic.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the minimal list updates that turn one list of tasks into another. The lists are compared
+ * by {@link Snapshot} objects that only contain the ids and content hashes of the tasks, so the
+ * computation can run on a background thread while the lists themselves stay on the main thread.
+ *
+ * <p>Removed tasks are reported first from the end of the list, then moves and inserts are reported
+ * from the end of the new list. Only tasks that are not part of the longest increasing subsequence of
+ * the kept tasks are moved. Changes are reported last with the indices of the new list.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public final class TaskListDiff {
+
+    private static final int OP_REMOVE = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_MOVE = 2;
+    private static final int OP_CHANGE = 3;
+
+    private TaskListDiff() {
+        //static helper
+    }
+
+    /**
+     * Returns the hash of all values of a task that are shown in the list. The list position is not
+     * part of the content, it is covered by the order of the snapshot.
+     * @param title The title of the task.
+     * @param dueDate The due date in milliseconds or 0 if the task has no reminder.
+     * @param done <code>true</code> if the task is done.
+     * @return The hash of the passed values.
+     */
+    public static int contentHash(final String title, final long dueDate, final boolean done) {
+        int result = title != null ? title.hashCode() : 0;
+        result = 31 * result + (int) (dueDate ^ (dueDate >>> 32));
+        result = 31 * result + (done ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * Returns the content hash of the passed task, see {@link #contentHash(String, long, boolean)}.
+     * @param task The {@link Task} to hash.
+     * @return The hash of the shown values of the task.
+     */
+    public static int contentHash(final Task task) {
+        long dueDate = task.getReminder() != null ? task.getReminder().getTime() : 0;
+        return contentHash(task.getTitle(), dueDate, task.isDone());
+    }
+
+    /**
+     * Computes the updates from the old to the new snapshot.
+     * @param oldSnapshot The {@link Snapshot} of the shown list.
+     * @param newSnapshot The {@link Snapshot} of the list to show.
+     * @param maxOperations The maximum number of updates, if more are needed a full reload is cheaper.
+     * @return The {@link Result} with the updates or a result that requires a full reload.
+     */
+    public static Result compute(final Snapshot oldSnapshot, final Snapshot newSnapshot, final int maxOperations) {
+
+        long[] oldIds = oldSnapshot.ids;
+        long[] newIds = newSnapshot.ids;
+        Operations ops = new Operations(maxOperations);
+
+        Map<Long, Integer> newIndices = indexById(newIds);
+
+        //removals, from the end so the reported indices stay valid
+        int keptCount = 0;
+        for (int i = oldIds.length - 1; i >= 0; i--) {
+            if (newIndices.containsKey(oldIds[i])) keptCount++;
+            else if (!ops.add(OP_REMOVE, i, 0)) return Result.FULL_RELOAD;
+        }
+
+        //the kept tasks in their old order and their indices in the new list
+        long[] current = new long[newIds.length];
+        int[] targets = new int[keptCount];
+        int size = 0;
+        for (long id : oldIds) {
+            Integer newIndex = newIndices.get(id);
+            if (newIndex != null) {
+                targets[size] = newIndex;
+                current[size++] = id;
+            }
+        }
+        boolean[] stable = new boolean[newIds.length];
+        for (int index : longestIncreasingSubsequence(targets)) stable[targets[index]] = true;
+
+        Map<Long, Integer> oldIndices = indexById(oldIds);
+
+        //moves and inserts, from the end of the new list in front of the already placed task
+        int anchor = size;
+        for (int j = newIds.length - 1; j >= 0; j--) {
+            long id = newIds[j];
+            if (stable[j]) {
+                anchor = lastIndexOf(current, id, anchor - 1);
+            } else if (oldIndices.containsKey(id)) {
+                int from = lastIndexOf(current, id, size - 1);
+                int to = from < anchor ? anchor - 1 : anchor;
+                move(current, from, to);
+                if (!ops.add(OP_MOVE, from, to)) return Result.FULL_RELOAD;
+                anchor = to;
+            } else {
+                System.arraycopy(current, anchor, current, anchor + 1, size - anchor);
+                current[anchor] = id;
+                size++;
+                if (!ops.add(OP_INSERT, anchor, 0)) return Result.FULL_RELOAD;
+            }
+        }
+
+        //changes of the kept tasks
+        for (int i = 0; i < oldIds.length; i++) {
+            Integer newIndex = newIndices.get(oldIds[i]);
+            if (newIndex != null && oldSnapshot.hashes[i] != newSnapshot.hashes[newIndex]) {
+                if (!ops.add(OP_CHANGE, newIndex, 0)) return Result.FULL_RELOAD;
+            }
+        }
+
+        return new Result(ops.toArray());
+    }
+
+    private static Map<Long, Integer> indexById(final long[] ids) {
+        Map<Long, Integer> indices = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) indices.put(ids[i], i);
+        return indices;
+    }
+
+    private static int lastIndexOf(final long[] values, final long value, final int fromIndex) {
+        for (int i = fromIndex; i >= 0; i--) {
+            if (values[i] == value) return i;
+        }
+        throw new IllegalStateException("Id " + value + " not found");
+    }
+
+    private static void move(final long[] values, final int from, final int to) {
+        long value = values[from];
+        if (from < to) System.arraycopy(values, from + 1, values, from, to - from);
+        else System.arraycopy(values, to, values, to + 1, from - to);
+        values[to] = value;
+    }
+
+    /**
+     * Returns the indices of one longest strictly increasing subsequence of the passed values.
+     * @param values The values to search.
+     * @return The indices of the subsequence in ascending order.
+     */
+    static int[] longestIncreasingSubsequence(final int[] values) {
+
+        //tails[k] is the index of the smallest tail of all subsequences of length k + 1
+        int[] tails = new int[values.length];
+        int[] previous = new int[values.length];
+        int length = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) low = middle + 1;
+                else high = middle;
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) length++;
+        }
+
+        int[] result = new int[length];
+        for (int k = length - 1, i = length > 0 ? tails[length - 1] : -1; k >= 0; k--, i = previous[i]) {
+            result[k] = i;
+        }
+        return result;
+    }
+
+    /**
+     * The ids and content hashes of a list of tasks at a single point in time.
+     */
+    public static final class Snapshot {
+
+        final long[] ids;
+        final int[] hashes;
+
+        /**
+         * Creates a new instance from the passed arrays, they are not copied.
+         * @param ids The ids of the tasks in list order.
+         * @param hashes The content hashes of the tasks, see {@link #contentHash(String, long, boolean)}.
+         */
+        public Snapshot(final long[] ids, final int[] hashes) {
+            if (ids.length != hashes.length) throw new IllegalArgumentException("Different lengths");
+            this.ids = ids;
+            this.hashes = hashes;
+        }
+
+        /**
+         * Creates a snapshot by reading every task of the passed list.
+         * @param tasks The tasks to read.
+         * @param excludeDone <code>true</code> if only tasks that are not done should be part of the snapshot.
+         * @return The {@link Snapshot} of the list.
+         */
+        public static Snapshot of(final List<Task> tasks, final boolean excludeDone) {
+            long[] ids = new long[tasks.size()];
+            int[] hashes = new int[ids.length];
+            int count = 0;
+            for (Task task : tasks) {
+                if (excludeDone && task.isDone()) continue;
+                ids[count] = task.getId();
+                hashes[count++] = contentHash(task);
+            }
+            if (count < ids.length) {
+                ids = Arrays.copyOf(ids, count);
+                hashes = Arrays.copyOf(hashes, count);
+            }
+            return new Snapshot(ids, hashes);
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * Returns whether every id is contained only once, which is required by
+         * {@link TaskListDiff#compute(Snapshot, Snapshot, int)}.
+         */
+        public boolean hasUniqueIds() {
+            long[] sorted = Arrays.copyOf(ids, ids.length);
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] == sorted[i - 1]) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Receives the updates of a {@link Result}.
+     */
+    public interface Callback {
+
+        void onRemoved(int index);
+
+        void onInserted(int index);
+
+        void onMoved(int fromIndex, int toIndex);
+
+        void onChanged(int index);
+    }
+
+    /**
+     * The updates computed by {@link #compute(Snapshot, Snapshot, int)}.
+     */
+    public static final class Result {
+
+        /** Result if the lists differ too much and should be reloaded completely. */
+        public static final Result FULL_RELOAD = new Result(null);
+
+        private final int[] operations;
+
+        private Result(final int[] operations) {
+            this.operations = operations;
+        }
+
+        /**
+         * Returns whether the updates were computed.
+         * @return <code>false</code> if the list has to be reloaded completely.
+         */
+        public boolean isIncremental() {
+            return operations != null;
+        }
+
+        /**
+         * Returns the number of updates.
+         */
+        public int size() {
+            return operations != null ? operations.length / 3 : 0;
+        }
+
+        /**
+         * Reports all updates in order to the passed callback.
+         * @param callback The {@link Callback} to notify.
+         */
+        public void dispatchTo(final Callback callback) {
+            if (operations == null) throw new IllegalStateException("The result requires a full reload");
+            for (int i = 0; i < operations.length; i += 3) {
+                switch (operations[i]) {
+                    case OP_REMOVE:
+                        callback.onRemoved(operations[i + 1]);
+                        break;
+                    case OP_INSERT:
+                        callback.onInserted(operations[i + 1]);
+                        break;
+                    case OP_MOVE:
+                        callback.onMoved(operations[i + 1], operations[i + 2]);
+                        break;
+                    case OP_CHANGE:
+                        callback.onChanged(operations[i + 1]);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable array of operations, each stored as type and two arguments.
+     */
+    private static final class Operations {
+
+        private final int maxCount;
+        private int[] values = new int[48];
+        private int length = 0;
+
+        Operations(final int maxCount) {
+            this.maxCount = maxCount;
+        }
+
+        boolean add(final int type, final int first, final int second) {
+            if (length / 3 >= maxCount) return false;
+            if (length + 3 > values.length) values = Arrays.copyOf(values, values.length * 2);
+            values[length++] = type;
+            values[length++] = first;
+            values[length++] = second;
+            return true;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, length);
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package de.leoliebig.simpLISTic.model;
+
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Computes sparse ordering keys for the list positions of tasks. The positions of neighbouring tasks
+ * are spaced by {@link #GAP}, so moving a task between two others only changes the key of the moved
+ * task. If there is no space left between two neighbours the list has to be rebalanced.
+ *
+ * <p>Lists that implement {@link Positions} are only asked for the positions, so computing a position
+ * does not create the tasks of a lazily loaded list.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public final class TaskOrder {
+
+    /** The distance between the positions of two neighbouring tasks after rebalancing. */
+    public static final long GAP = 1L << 16;
+
+    /** Indicates that there is no free position between two neighbours. */
+    public static final long NO_GAP = Long.MIN_VALUE;
+
+    /**
+     * A list of tasks that returns the position of a task without creating it.
+     */
+    public interface Positions {
+
+        /**
+         * Returns the position of the task at the passed index.
+         * @param index The index of the task.
+         * @return The position of the task.
+         */
+        long getListPosition(int index);
+    }
+
+    private TaskOrder() {
+        //static helper
+    }
+
+    /**
+     * Returns the position of the task at the passed index, see {@link Positions}.
+     * @param tasks The list of tasks.
+     * @param index The index of the task.
+     * @return The position of the task.
+     */
+    public static long getListPosition(final List<Task> tasks, final int index) {
+        if (tasks instanceof Positions) return ((Positions) tasks).getListPosition(index);
+        return tasks.get(index).getListPosition();
+    }
+
+    /**
+     * Returns a position that sorts behind the passed position.
+     * @param position The position of the preceding task.
+     * @return The position for a task following the passed one.
+     */
+    public static long after(final long position) {
+        return position + GAP;
+    }
+
+    /**
+     * Returns a position that sorts in front of the passed position.
+     * @param position The position of the following task.
+     * @return The position for a task preceding the passed one.
+     */
+    public static long before(final long position) {
+        return position - GAP;
+    }
+
+    /**
+     * Returns the position in the middle of the two passed positions.
+     * @param previous The position of the preceding task.
+     * @param next The position of the following task.
+     * @return The position between both or {@link #NO_GAP} if there is no free position left.
+     */
+    public static long between(final long previous, final long next) {
+        if (next - previous < 2) return NO_GAP;
+        return previous + (next - previous) / 2;
+    }
+
+    /**
+     * Computes the position for the task at the passed index from the positions of its neighbours.
+     * The task itself must already be at the passed index of the list.
+     * @param tasks The ordered list of tasks.
+     * @param index The index of the task to compute the position for.
+     * @return The new position of the task or {@link #NO_GAP} if the list has to be rebalanced.
+     */
+    public static long positionAt(final List<Task> tasks, final int index) {
+
+        boolean hasPrevious = index > 0;
+        boolean hasNext = index < tasks.size() - 1;
+
+        if (!hasPrevious && !hasNext) return 0;
+        if (!hasPrevious) return before(getListPosition(tasks, index + 1));
+        if (!hasNext) return after(getListPosition(tasks, index - 1));
+        return between(getListPosition(tasks, index - 1), getListPosition(tasks, index + 1));
+    }
+
+    /**
+     * Returns the index at which a task with the passed position has to be inserted to keep the
+     * list sorted. Only log(n) tasks of the list are read.
+     * @param tasks The tasks of the list sorted by their position.
+     * @param position The position of the task to insert.
+     * @return The index behind all tasks with a smaller or equal position.
+     */
+    public static int indexFor(final List<Task> tasks, final long position) {
+        int low = 0;
+        int high = tasks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getListPosition(tasks, middle) <= position) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position for a new task that should be appended to the passed sorted tasks. Only
+     * the last task of the list is read.
+     * @param tasks The tasks of the list sorted by their position.
+     * @return A position larger than all positions of the passed tasks.
+     */
+    public static long append(final List<Task> tasks) {
+        if (tasks.isEmpty()) return 0;
+        return after(getListPosition(tasks, tasks.size() - 1));
+    }
+
+    /**
+     * Returns the position for a new task that should be appended to the passed tasks.
+     * @param tasks The tasks of the list in any order.
+     * @return A position larger than all positions of the passed tasks.
+     */
+    public static long next(final List<Task> tasks) {
+        if (tasks.isEmpty()) return 0;
+
+        long last = Long.MIN_VALUE;
+        for (Task task : tasks) {
+            if (task.getListPosition() > last) last = task.getListPosition();
+        }
+        return after(last);
+    }
+
+    /**
+     * Spreads the positions of all passed tasks evenly by {@link #GAP} while keeping their order.
+     * @param tasks The ordered list of tasks to rebalance.
+     */
+    public static void rebalance(final List<Task> tasks) {
+        ListIterator<Task> iterator = tasks.listIterator();
+        while (iterator.hasNext()) {
+            long position = iterator.nextIndex() * GAP;
+            iterator.next().setListPosition(position);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package de.leoliebig.simpLISTic;
+
+import android.os.Debug;
+
+import de.leoliebig.simpLISTic.metrics.Counter;
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.wundertest.BuildConfig;
+
+/**
+ * Counts the objects allocated by the main thread during a measured call, e.g. binding a list item. The
+ * allocations are added to a {@link Counter} named like the measured call with the suffix
+ * <code>.allocations</code>, the calls that allocated at least one object to the suffix <code>.allocating</code>.
+ * Both are part of the metrics dump, so a change that adds allocations to a hot path shows up there.
+ *
+ * <p>Uses the allocation counting of the VM, which slows down every allocation of the app. It is only
+ * started in debug builds while the metrics are enabled, all other calls are skipped.</p>
+ *
+ * @author info@leoliebig.de
+ */
+@SuppressWarnings("deprecation")
+public final class AllocationCheck {
+
+    private static boolean counting = false;
+
+    private final Counter allocations;
+    private final Counter allocating;
+
+    /**
+     * Creates a check, should be stored in a static field like a {@link de.leoliebig.simpLISTic.metrics.Timer}.
+     * @param name The name of the measured call, e.g. <code>adapter.bind</code>.
+     */
+    public AllocationCheck(final String name) {
+        this.allocations = Metrics.counter(name + ".allocations");
+        this.allocating = Metrics.counter(name + ".allocating");
+    }
+
+    /**
+     * Starts the measurement of a call.
+     * @return The value to pass to {@link #stop(int)}, negative if nothing is measured.
+     */
+    public int start() {
+        if (!BuildConfig.DEBUG || !Metrics.isEnabled()) return -1;
+        if (!counting) {
+            Debug.startAllocCounting();
+            counting = true;
+        }
+        return Debug.getThreadAllocCount();
+    }
+
+    /**
+     * Stops the measurement of a call and records its allocations.
+     * @param start The value returned by {@link #start()}.
+     */
+    public void stop(final int start) {
+        if (start < 0) return;
+        int count = Debug.getThreadAllocCount() - start;
+        if (count <= 0) return;
+        allocations.add(count);
+        allocating.inc();
+    }
+
+}
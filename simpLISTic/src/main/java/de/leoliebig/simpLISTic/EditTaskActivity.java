@@ -7,8 +7,8 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.util.Log;
 
-import de.leoliebig.simpLISTic.controller.NotificationHelper;
 import de.leoliebig.simpLISTic.db.DatabaseHelper;
+import de.leoliebig.simpLISTic.db.TaskWriteQueue;
 import de.leoliebig.simpLISTic.model.Task;
 import de.leoliebig.simpLISTic.view.EditTaskFragment;
 import de.leoliebig.wundertest.R;
@@ -45,7 +45,7 @@ public class EditTaskActivity extends AppCompatActivity implements EditTaskFragm
             if (taskToEdit == null) throw new AssertionError("No task with id " + id + " found.");
             if(actionBar != null) actionBar.setTitle("Edit task");
         } else {
-            int taskPosition = intent.getIntExtra(Global.INTENT_EXTRA_TASK_LIST_POSITION, Integer.MAX_VALUE);
+            long taskPosition = intent.getLongExtra(Global.INTENT_EXTRA_TASK_LIST_POSITION, Integer.MAX_VALUE);
             taskToEdit = new Task("");
             taskToEdit.setListPosition(taskPosition);
             if(actionBar != null) actionBar.setTitle("New task");
@@ -62,20 +62,24 @@ public class EditTaskActivity extends AppCompatActivity implements EditTaskFragm
     @Override
     public void onTaskChanged(@NonNull final Task task) {
 
-        long id = dbHelper.save(task);
-        NotificationHelper.updateNotification(task, id, this);
-        if (Global.DEBUG) Log.d(TAG, "Saved / updated task: " + task.getTitle());
+        //the reminder is updated by the ReminderScheduler
+        dbHelper.getWriteQueue().save(task, new TaskWriteQueue.Callback() {
+            @Override
+            public void onWritten(long id, boolean successful) {
+                if (Global.DEBUG) Log.d(TAG, "Saved / updated task: " + task.getTitle() + ", successful: " + successful);
+            }
+        });
         finish();
     }
 
     @Override
     public void onTaskDeleted(@NonNull final Task task) {
-        int result = dbHelper.deleteTask(task.getId());
-
-        task.setReminder(null); //notifications for tasks without reminder dates will be deleted in the next line
-        NotificationHelper.updateNotification(task, task.getId(), this);
-
-        if (result != 1) Log.e(TAG, "Could not delete task: " + task.getTitle());
+        dbHelper.getWriteQueue().delete(task.getId(), new TaskWriteQueue.Callback() {
+            @Override
+            public void onWritten(long id, boolean successful) {
+                if (!successful) Log.e(TAG, "Could not delete task: " + task.getTitle());
+            }
+        });
         finish();
 
     }
@@ -0,0 +1,82 @@
+package de.leoliebig.simpLISTic;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.metrics.Counter;
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.simpLISTic.metrics.Timer;
+
+/**
+ * Records the time between two frames of the main thread in the <code>ui.frame</code> {@link Timer}
+ * and the frames that were skipped in the <code>ui.frame.dropped</code> {@link Counter}. Frames are
+ * only recorded for a short time after an interaction of the user, e.g. while toggling many tasks in a
+ * row or scrolling, so idle frames do not hide the slow ones in the percentiles of the metrics dump.
+ *
+ * <p>The frames are taken from the {@link Choreographer}, which needs API 16. Older platforms skip
+ * all calls, as well as builds that do not record metrics. Must be called on the main thread.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public final class FrameTimer {
+
+    private static final Timer TIMER_FRAME = Metrics.timer("ui.frame");
+    private static final Counter COUNTER_DROPPED = Metrics.counter("ui.frame.dropped");
+
+    //frames are recorded until this time passed after the last interaction
+    private static final long ACTIVE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    //duration of a single frame at 60 fps
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private FrameTimer() {
+        //static helper
+    }
+
+    /**
+     * Records the following frames, is called for every interaction that changes the list.
+     */
+    public static void onInteraction() {
+        if (Metrics.isEnabled() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            Recorder.INSTANCE.activate();
+        }
+    }
+
+    /**
+     * Receives the frames while the recording is active, the class is only loaded on API 16 and newer.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class Recorder implements Choreographer.FrameCallback {
+
+        static final Recorder INSTANCE = new Recorder();
+
+        private long lastFrameNanos = 0;
+        private long activeUntilNanos = 0;
+        private boolean posted = false;
+
+        void activate() {
+            activeUntilNanos = System.nanoTime() + ACTIVE_NANOS;
+            if (posted) return;
+            posted = true;
+            //the first frame only sets the start
+            lastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (lastFrameNanos != 0) {
+                long duration = frameTimeNanos - lastFrameNanos;
+                TIMER_FRAME.record(duration);
+                if (duration > FRAME_NANOS + FRAME_NANOS / 2) COUNTER_DROPPED.add(Math.round((double) duration / FRAME_NANOS) - 1);
+            }
+            lastFrameNanos = frameTimeNanos;
+
+            if (frameTimeNanos < activeUntilNanos) Choreographer.getInstance().postFrameCallback(this);
+            else posted = false;
+        }
+    }
+
+}
@@ -4,11 +4,22 @@ import android.app.Application;
 import android.content.Context;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.leakcanary.RefWatcher;
 
-import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+
+import de.leoliebig.simpLISTic.controller.Preferences;
+import de.leoliebig.simpLISTic.controller.ReminderScheduler;
+import de.leoliebig.simpLISTic.db.DatabaseHelper;
+import de.leoliebig.simpLISTic.db.FirstScreenStore;
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.simpLISTic.model.DetailAdapter;
+import de.leoliebig.simpLISTic.model.Reminders;
+import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.wundertest.BuildConfig;
 
 /**
  * Class holding application constants and helper methods
@@ -19,35 +30,67 @@ public class Global extends Application {
     public static final boolean DEBUG = true;
     public static final String INTENT_EXTRA_TASK_ID = "extraTaskId";
     public static final String INTENT_EXTRA_TASK_LIST_POSITION = "extraTaskListPosition";
-    public static final String INTENT_EXTRA_TASK_TITLE = "extraTaskTitle";
-    public static final String INTENT_EXTRA_NOTIFICATION = "extraNotification";
 
-    public static final Gson gson = new Gson();
+    public static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Task.Detail.class, new DetailAdapter())
+            .create();
 
     private RefWatcher refWatcher;
+    private FirstScreenStore firstScreenStore;
+    //the tasks shown until the database was read, taken by the first activity
+    private List<Task> firstScreen;
 
     public static RefWatcher getRefWatcher(Context context) {
         Global application = (Global) context.getApplicationContext();
         return application.refWatcher;
     }
 
+    public static FirstScreenStore getFirstScreenStore(Context context) {
+        Global application = (Global) context.getApplicationContext();
+        return application.firstScreenStore;
+    }
+
+    /**
+     * Returns the tasks of the first screen that were stored before the process was started. They are
+     * only returned once, later activities have to wait for the database.
+     * @return The tasks to show until the list was loaded or <code>null</code> if they were already taken.
+     */
+    public static List<Task> takeFirstScreen(Context context) {
+        Global application = (Global) context.getApplicationContext();
+        List<Task> tasks = application.firstScreen;
+        application.firstScreen = null;
+        return tasks;
+    }
 
 
     /**
      * Returns the default reminder date which is tomorrow at 9 am
      */
     public static Date getDefaultReminderDate() {
-        Calendar c = Calendar.getInstance();
-        c.add(Calendar.DAY_OF_MONTH, 1);
-        c.set(Calendar.HOUR_OF_DAY, 9);
-        c.set(Calendar.MINUTE, 0);
-        c.set(Calendar.SECOND, 0);
-        return c.getTime();
+        return Reminders.getDefaultDate(new Date());
     }
 
     @Override public void onCreate() {
         super.onCreate();
+        //recorded from the start in debug builds, release builds only record if enabled in the menu of the MainActivity
+        Metrics.setEnabled(BuildConfig.DEBUG || Preferences.getMetricsEnabled(this));
         refWatcher = LeakCanary.install(this);
+        //a single small read, the list can be shown before the database was opened
+        firstScreenStore = new FirstScreenStore(this);
+        firstScreen = firstScreenStore.read();
+        ReminderScheduler.getInstance(this).start();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        DatabaseHelper.getInstance(this).onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        DatabaseHelper.getInstance(this).onTrimMemory(TRIM_MEMORY_COMPLETE);
     }
 
 }
@@ -3,11 +3,16 @@ package de.leoliebig.simpLISTic;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.ActionBar;
+import android.support.v4.util.LongSparseArray;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
 import android.view.Menu;
@@ -15,17 +20,30 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.leoliebig.simpLISTic.view.TasksFragment;
 import de.leoliebig.wundertest.R;
-import de.leoliebig.simpLISTic.controller.NotificationHelper;
+import de.leoliebig.simpLISTic.controller.TaskAdapter;
 import de.leoliebig.simpLISTic.controller.Preferences;
 import de.leoliebig.simpLISTic.db.DatabaseHelper;
+import de.leoliebig.simpLISTic.db.FirstScreenStore;
+import de.leoliebig.simpLISTic.db.TaskChange;
+import de.leoliebig.simpLISTic.db.TaskCursorList;
+import de.leoliebig.simpLISTic.db.TaskWriteQueue;
+import de.leoliebig.simpLISTic.metrics.Metrics;
 import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskOrder;
 import de.leoliebig.simpLISTic.view.EditTaskFragment;
 import rx.Observer;
 import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action1;
 
 /**
  * Holds and controls the {@link TasksFragment} on smartphones. On tablets
@@ -37,22 +55,42 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
 
     private static final String TAG = MainActivity.class.getSimpleName();
 
+    //changes within this time are stored with a single snapshot of the first screen
+    private static final long FIRST_SCREEN_SAVE_DELAY = 1000;
+
     //gui
     private TasksFragment tasksFragment;
     private EditTaskFragment editFragment;
+    private FloatingActionButton fab;
 
     //misc
     private DatabaseHelper dbHelper;
-    private List<Task> tasks;
+    private TaskWriteQueue writeQueue;
+    private FirstScreenStore firstScreenStore;
+    private boolean firstScreenSaveScheduled = false;
+    private TaskCursorList tasks;
     private boolean hideDoneTasks = false;
-    //indicates whether the tasks were reordered and need to be updated
-    private boolean updateTasks = false;
+    //the current search query or null if all tasks are shown
+    private String searchQuery = null;
+    //tasks with changed list positions that need to be updated
+    private final Set<Task> movedTasks = new LinkedHashSet<>();
+    //number of unfinished writes by task id, the changes of these tasks are already shown
+    private final LongSparseArray<Integer> pendingWrites = new LongSparseArray<>();
 
     //concurrency
     private Subscription subAllTasks;
-    private Subscription subUpdateTasks;
+    private Subscription subSearch;
+    private Subscription subChanges;
     private FetchTasksObserver fetchTasksObserver;
-    private UpdateTasksObserver updateTasksObserver;
+    private SearchObserver searchObserver;
+
+    private final Runnable saveFirstScreen = new Runnable() {
+        @Override
+        public void run() {
+            firstScreenSaveScheduled = false;
+            if(tasks != null) firstScreenStore.save(tasks, hideDoneTasks);
+        }
+    };
 
 
     @Override
@@ -66,7 +104,9 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
-        FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab_add);
+        fab = (FloatingActionButton) findViewById(R.id.fab_add);
+        //new tasks are appended to the loaded list, enabled by the FetchTasksObserver
+        fab.setEnabled(false);
         fab.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -75,34 +115,72 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
         });
 
         dbHelper = DatabaseHelper.getInstance(getApplicationContext());
+        writeQueue = dbHelper.getWriteQueue();
         fetchTasksObserver = new FetchTasksObserver();
-        updateTasksObserver = new UpdateTasksObserver();
+        searchObserver = new SearchObserver();
 
         hideDoneTasks = Preferences.getDoneTasksHidden(getApplicationContext());
         tasksFragment.setDoneTasksHidden(hideDoneTasks);
+
+        //after a cold start the stored first screen is shown until the tasks were loaded
+        firstScreenStore = Global.getFirstScreenStore(this);
+        List<Task> firstScreen = Global.takeFirstScreen(this);
+        if(firstScreen != null && !firstScreen.isEmpty()){
+            if(Global.DEBUG) Log.d(TAG, "Showing " + firstScreen.size() + " task(s) of the first screen");
+            tasksFragment.showPreview(firstScreen);
+        }
+
+        //also receives the changes made by other activities while this one is paused
+        subChanges = dbHelper.observeChanges()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Action1<TaskChange>() {
+                    @Override
+                    public void call(TaskChange change) {
+                        applyChange(change);
+                    }
+                });
     }
 
 
     @Override
     protected void onResume() {
         super.onResume();
-        subAllTasks = dbHelper.getAllAsync(fetchTasksObserver);
+        //later changes are applied by applyChange()
+        if(tasks == null) subAllTasks = dbHelper.getAllAsync(fetchTasksObserver);
     }
 
     @Override
     protected void onPause() {
-        if(updateTasks) {
-            if(Global.DEBUG) Log.d(TAG, "Updating all tasks");
-            subUpdateTasks = dbHelper.saveAllAsync(updateTasksObserver, tasks);
+        if(!movedTasks.isEmpty()) {
+            if(Global.DEBUG) Log.d(TAG, "Updating " + movedTasks.size() + " moved task(s)");
+            for(Task task : movedTasks) writeQueue.move(task, trackWrite(task.getId(), null));
+            movedTasks.clear();
         }
+        //the process may be killed while paused
+        writeQueue.flush();
+        getWindow().getDecorView().removeCallbacks(saveFirstScreen);
+        saveFirstScreen.run();
         if(subAllTasks != null) subAllTasks.unsubscribe();
+        if(subSearch != null) subSearch.unsubscribe();
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        subChanges.unsubscribe();
+        getWindow().getDecorView().removeCallbacks(saveFirstScreen);
+        if(tasks != null) tasks.close();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
         MenuItem item = menu.findItem(R.id.action_hide_done_tasks);
         if(item!=null) item.setChecked(hideDoneTasks);
+        MenuItem recordItem = menu.findItem(R.id.action_record_metrics);
+        if(recordItem != null) recordItem.setChecked(Metrics.isEnabled());
+        MenuItem metricsItem = menu.findItem(R.id.action_metrics);
+        if(metricsItem != null) metricsItem.setVisible(Metrics.isEnabled());
         return super.onPrepareOptionsMenu(menu);
     }
 
@@ -110,9 +188,57 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText);
+                return true;
+            }
+        });
+        MenuItemCompat.setOnActionExpandListener(searchItem, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                search(null);
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Searches the titles and notes of the tasks and shows the results, a previous search that is
+     * still running is cancelled.
+     * @param query The text entered by the user or <code>null</code> to show all tasks again.
+     */
+    private void search(final String query) {
+
+        if(subSearch != null) subSearch.unsubscribe();
+        searchQuery = query != null && !query.trim().isEmpty() ? query : null;
+
+        if(searchQuery == null){
+            tasksFragment.setReorderEnabled(true);
+            if(tasks != null) tasksFragment.updateContent(tasks);
+            return;
+        }
+
+        tasksFragment.setReorderEnabled(false);
+        subSearch = dbHelper.searchAsync(searchObserver, searchQuery);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         // Handle action bar item clicks here. The action bar will
@@ -133,9 +259,8 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
                     .setPositiveButton(getString(R.string.btn_okay), new DialogInterface.OnClickListener() {
                         @Override
                         public void onClick(DialogInterface arg0, int arg1) {
-                            dbHelper.deleteAll();
-                            tasks.clear();
-                            tasksFragment.updateContent(tasks);
+                            //the list is cleared by applyChange()
+                            writeQueue.deleteAll(null);
                         }
                     })
                     .create()
@@ -148,26 +273,205 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
             hideDoneTasks = item.isChecked();
             tasksFragment.setDoneTasksHidden(hideDoneTasks);
             Preferences.setDoneTasksHidden(getApplicationContext(), hideDoneTasks);
+            scheduleFirstScreenSave();
+            return true;
+        }
+        else if(id == R.id.action_record_metrics){
+            item.setChecked(!item.isChecked());
+            Metrics.setEnabled(item.isChecked());
+            Preferences.setMetricsEnabled(getApplicationContext(), item.isChecked());
+            return true;
+        }
+        else if(id == R.id.action_metrics){
+            showMetrics();
             return true;
         }
 
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Shows the recorded metrics and logs them as JSON, so they can be collected from the log. The JSON
+     * can also be shared with other apps, e.g. to collect the metrics of a release build.
+     */
+    private void showMetrics() {
+
+        final String json = Metrics.dumpJson();
+        Log.i(TAG, "Metrics: " + json);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_metrics)
+                .setMessage(Metrics.dumpText())
+                .setNegativeButton(getString(R.string.btn_share), new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent intent = new Intent(Intent.ACTION_SEND);
+                        intent.setType("application/json");
+                        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.app_name) + " " + getString(R.string.action_metrics));
+                        intent.putExtra(Intent.EXTRA_TEXT, json);
+                        startActivity(Intent.createChooser(intent, getString(R.string.btn_share)));
+                    }
+                })
+                .setNeutralButton(getString(R.string.btn_reset), new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Metrics.reset();
+                    }
+                })
+                .setPositiveButton(getString(R.string.btn_okay), null)
+                .create()
+                .show();
+    }
+
+    /**
+     * Appends the recorded metrics to the state of the activity, e.g. for
+     * <code>adb shell dumpsys activity top</code>. The metrics are written as JSON if the arguments
+     * contain <code>--metrics-json</code>. Nothing is appended while no metrics are recorded.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        if(!Metrics.isEnabled()) return;
+        if(args != null && Arrays.asList(args).contains("--metrics-json")) writer.println(Metrics.dumpJson());
+        else writer.print(Metrics.dumpText());
+    }
+
+    /**
+     * Applies a single change of the database to the loaded tasks and updates only the affected
+     * list items. If search results are shown the search is run again instead.
+     * @param change The {@link TaskChange} published by the {@link DatabaseHelper}.
+     */
+    private void applyChange(@NonNull final TaskChange change) {
+
+        //a pending load already contains the change
+        if(tasks == null) return;
+        if(Global.DEBUG) Log.d(TAG, "Applying change: " + change);
+
+        boolean showsTasks = searchQuery == null;
+        Task task = change.getTask();
+        int index;
+
+        switch (change.getType()){
+            case INSERTED:
+                index = TaskOrder.indexFor(tasks, task.getListPosition());
+                tasks.add(index, task);
+                if(showsTasks) tasksFragment.notifyTaskInserted(index);
+                break;
+            case UPDATED:
+            case MOVED:
+                index = tasks.indexOfId(change.getId());
+                //not in the list, e.g. swiped away and waiting for the undo timeout
+                if(index == -1) break;
+                //changes made by this activity are already shown
+                if(getPendingWrites(change.getId()) > 0) break;
+
+                Task previous = tasks.set(index, task);
+                if(isInOrder(index)){
+                    if(!showsTasks) break;
+                    if(previous == task){
+                        //changed in place, the previous values are unknown
+                        tasksFragment.notifyTaskChanged(index);
+                    }
+                    else{
+                        for(TaskAdapter.Change value : TaskAdapter.getChanges(previous, task)){
+                            tasksFragment.notifyTaskChanged(index, value);
+                        }
+                    }
+                }
+                else{
+                    tasks.remove(index);
+                    int newIndex = TaskOrder.indexFor(tasks, task.getListPosition());
+                    tasks.add(newIndex, task);
+                    if(showsTasks){
+                        tasksFragment.notifyTaskMoved(index, newIndex);
+                        tasksFragment.notifyTaskChanged(newIndex);
+                    }
+                }
+                break;
+            case DELETED:
+                index = tasks.indexOfId(change.getId());
+                if(index == -1) break;
+                tasks.remove(index);
+                if(showsTasks) tasksFragment.notifyTaskRemoved(index);
+                break;
+            case CLEARED:
+                tasks.clear();
+                if(showsTasks) tasksFragment.updateContent(tasks);
+                break;
+            case REBALANCED:
+                //only written by this activity, the list already has the new positions
+                break;
+        }
+
+        if(!showsTasks) search(searchQuery);
+        //also stores the changes made by other activities while this one is paused
+        scheduleFirstScreenSave();
+    }
+
+    /**
+     * Stores the first tasks of the list after a short delay, so following changes are stored together.
+     * Nothing is written if the first screen did not change.
+     */
+    private void scheduleFirstScreenSave() {
+        if(firstScreenSaveScheduled) return;
+        firstScreenSaveScheduled = true;
+        getWindow().getDecorView().postDelayed(saveFirstScreen, FIRST_SCREEN_SAVE_DELAY);
+    }
+
+    /**
+     * Counts a write of the task with the passed id until it finished, the published changes of the
+     * task are not applied before, since the list already shows them.
+     * @param id The id of the written task.
+     * @param callback The {@link TaskWriteQueue.Callback} to notify after the write or <code>null</code>.
+     * @return The {@link TaskWriteQueue.Callback} to pass to the {@link TaskWriteQueue}.
+     */
+    private TaskWriteQueue.Callback trackWrite(final long id, @Nullable final TaskWriteQueue.Callback callback) {
+        pendingWrites.put(id, getPendingWrites(id) + 1);
+        return new TaskWriteQueue.Callback() {
+            @Override
+            public void onWritten(long rowId, boolean successful) {
+                int count = getPendingWrites(id) - 1;
+                if(count > 0) pendingWrites.put(id, count);
+                else pendingWrites.remove(id);
+                if(callback != null) callback.onWritten(rowId, successful);
+            }
+        };
+    }
+
+    private int getPendingWrites(final long id) {
+        Integer count = pendingWrites.get(id);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Checks whether the task at the passed index is sorted correctly between its neighbours.
+     * @param index The index of the task to check.
+     * @return <code>true</code> if the list position of the task fits between its neighbours.
+     */
+    private boolean isInOrder(final int index) {
+        //the neighbours are not loaded
+        long position = tasks.getListPosition(index);
+        if(index > 0 && tasks.getListPosition(index - 1) > position) return false;
+        if(index < tasks.size() - 1 && tasks.getListPosition(index + 1) < position) return false;
+        return true;
+    }
+
     /**
      * Lets the user create a new task and updates the GUI
      */
     private void createTask() {
 
+        //the position of the new task depends on the loaded list
+        if(tasks == null) return;
+
         if (editFragment == null) {
             //smartphone layout, start a new activity for editing a task
             Intent intent = new Intent(MainActivity.this, EditTaskActivity.class);
-            intent.putExtra(Global.INTENT_EXTRA_TASK_LIST_POSITION, tasks.size());
+            intent.putExtra(Global.INTENT_EXTRA_TASK_LIST_POSITION, TaskOrder.append(tasks));
             startActivity(intent);
         }else{
             //tablet layout, update the editFragment
             Task newTask = new Task("");
-            newTask.setListPosition(tasks.size());
+            newTask.setListPosition(TaskOrder.append(tasks));
             editFragment.setTask(newTask);
             ActionBar actionBar = getSupportActionBar();
             if(actionBar != null) actionBar.setTitle("New task");
@@ -206,14 +510,25 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
 
     @Override
     public void onTaskDone(Task task) {
-        dbHelper.save(task);
-        NotificationHelper.updateNotification(task, task.getId(), this);
+        //the fragment already updated the checkbox, the reminder is updated by the ReminderScheduler
+        //toggles of other instances, e.g. search results, update the list by the change event
+        boolean shown = tasks != null && tasks.holds(task);
+        writeQueue.save(task, shown ? trackWrite(task.getId(), null) : null);
+        scheduleFirstScreenSave();
     }
 
     @Override
-    public void onTaskMoved(List<Task> tasksWithNewPositions) {
-        tasks = tasksWithNewPositions;
-        updateTasks = true;
+    public void onTaskMoved(Task movedTask) {
+        movedTasks.add(movedTask);
+        scheduleFirstScreenSave();
+    }
+
+    @Override
+    public void onTasksRebalanced(long[] ids) {
+        //the pending moves are part of the rebalanced positions
+        movedTasks.clear();
+        writeQueue.rebalance(ids, null);
+        scheduleFirstScreenSave();
     }
 
     //EditTaskFragment callbacks
@@ -227,22 +542,37 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
         else {
             Toast.makeText(this, getString(R.string.toast_updated_task) + task.getTitle(), Toast.LENGTH_LONG).show();
         }
-        long id = dbHelper.save(task);
-        NotificationHelper.updateNotification(task, id, this);
 
-        subAllTasks = dbHelper.getAllAsync(fetchTasksObserver);
+        TaskWriteQueue.Callback callback = new TaskWriteQueue.Callback() {
+            @Override
+            public void onWritten(long id, boolean successful) {
+                if(!successful) Log.e(TAG, "Could not save task: " + task.getTitle());
+            }
+        };
+
+        int index = task.getId() != Task.TRANSIENT && tasks != null ? tasks.indexOfId(task.getId()) : -1;
+        if(index != -1 && tasks.get(index) == task){
+            //edited in place, show the changes right away
+            writeQueue.save(task, trackWrite(task.getId(), callback));
+            if(searchQuery == null) tasksFragment.notifyTaskChanged(index);
+        }
+        else{
+            //the list is updated by applyChange()
+            writeQueue.save(task, callback);
+        }
+
+        //reset the editor
+        updateEditFragmentContent();
     }
 
     @Override
     public void onTaskDeleted(@NonNull final Task task) {
-        int result = dbHelper.deleteTask(task.getId());
-
-        task.setReminder(null); //notifications for tasks without reminder dates will be deleted in the next line
-        NotificationHelper.updateNotification(task, task.getId(), this);
-
-        if (result != 1) Log.e(TAG, "Could not delete task: " + task.getTitle());
-
-        subAllTasks = dbHelper.getAllAsync(fetchTasksObserver);
+        writeQueue.delete(task.getId(), new TaskWriteQueue.Callback() {
+            @Override
+            public void onWritten(long id, boolean successful) {
+                if(!successful) Log.e(TAG, "Could not delete task: " + task.getTitle());
+            }
+        });
     }
 
     @Override
@@ -254,13 +584,18 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
      * Observer for handling the result of an async database query for all
      * tasks performed via RxAndroid.
      */
-    class FetchTasksObserver implements Observer<List<Task>>{
+    class FetchTasksObserver implements Observer<TaskCursorList>{
 
         @Override
         public void onCompleted() {
-            tasksFragment.updateContent(tasks);
+            fab.setEnabled(true);
+            if(searchQuery != null) search(searchQuery);
+            else tasksFragment.updateContent(tasks);
             if(Global.DEBUG) Log.d(TAG, "Loaded " + tasks.size() + " task(s) from db");
             updateEditFragmentContent();
+            //the time until the complete list is shown, the first screen was already shown before
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) reportFullyDrawn();
+            scheduleFirstScreenSave();
         }
 
         @Override
@@ -270,35 +605,30 @@ public class MainActivity extends AppCompatActivity implements TasksFragment.OnF
         }
 
         @Override
-        public void onNext(List<Task> tasks) {
+        public void onNext(TaskCursorList tasks) {
+            //only loaded if no tasks were loaded before, later changes are applied incrementally
             MainActivity.this.tasks = tasks;
         }
     }
 
     /**
-     * Observer for handling the result of an async database update query for all
-     * tasks performed via RxAndroid.
+     * Observer for handling the result of an async full-text search performed via RxAndroid.
      */
-    class UpdateTasksObserver implements Observer<Boolean>{
+    class SearchObserver implements Observer<List<Task>>{
 
         @Override
         public void onCompleted() {
-            subUpdateTasks.unsubscribe();
-            //reset the update flag
-            updateTasks = false;
+            //nothing to do
         }
 
         @Override
         public void onError(Throwable e) {
-            if(Global.DEBUG) Log.e(TAG, "Error updating all tasks from db: " + e.getLocalizedMessage());
+            if(Global.DEBUG) Log.e(TAG, "Error searching tasks: " + e.getLocalizedMessage());
         }
 
         @Override
-        public void onNext(Boolean successful) {
-            if(Global.DEBUG){
-                if(successful) Log.d(TAG, "Updated all tasks successfully");
-                else Log.e(TAG, "Could not update tasks");
-            }
+        public void onNext(List<Task> results) {
+            if(searchQuery != null) tasksFragment.updateContent(results);
         }
     }
 
@@ -0,0 +1,135 @@
+package de.leoliebig.simpLISTic;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.leoliebig.wundertest.BuildConfig;
+
+/**
+ * Adds sections of the app to systrace and Perfetto traces. Sections need API 18, older platforms and
+ * builds with {@link #ENABLED} set to <code>false</code> skip all calls. Sections are only recorded
+ * while a trace with the app category is captured, otherwise a call costs a single native check.
+ *
+ * <p>Synchronous sections must be ended on the thread that began them, in reverse order, callers end them
+ * in a <code>finally</code> block so an exception does not leave a section open. Async sections
+ * can span threads and are identified by the name and the returned cookie, they are shown on their own
+ * track. The platform offers them since API 29, older platforms have a hidden method. Both are called
+ * with reflection, so async sections are meant for rare events like a database subscription.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public final class Tracing {
+
+    private static final String TAG = Tracing.class.getSimpleName();
+
+    /** Compile-time switch, release builds do not contain the sections. */
+    public static final boolean ENABLED = BuildConfig.DEBUG;
+
+    //longer names are rejected by the platform
+    private static final int MAX_NAME_LENGTH = 127;
+
+    private static final AtomicInteger nextCookie = new AtomicInteger();
+
+    private Tracing() {
+        //static helper
+    }
+
+    /**
+     * Begins a synchronous section on the current thread.
+     * @param name The name of the section, e.g. <code>db.getAll</code>.
+     */
+    public static void begin(final String name) {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(truncate(name));
+        }
+    }
+
+    /**
+     * Ends the last section that was begun on the current thread.
+     */
+    public static void end() {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Begins an async section, e.g. from subscribing to an {@link rx.Observable} until its result was
+     * delivered on another thread.
+     * @param name The name of the section.
+     * @return The cookie to pass to {@link #endAsync(String, int)}.
+     */
+    public static int beginAsync(final String name) {
+        int cookie = nextCookie.incrementAndGet();
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            AsyncMethods.invoke(AsyncMethods.BEGIN, name, cookie);
+        }
+        return cookie;
+    }
+
+    /**
+     * Ends an async section.
+     * @param name The name passed to {@link #beginAsync(String)}.
+     * @param cookie The cookie returned by {@link #beginAsync(String)}.
+     */
+    public static void endAsync(final String name, final int cookie) {
+        if (ENABLED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            AsyncMethods.invoke(AsyncMethods.END, name, cookie);
+        }
+    }
+
+    private static String truncate(final String name) {
+        return name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name;
+    }
+
+    /**
+     * Resolves the methods for async sections once, on the first use.
+     */
+    private static final class AsyncMethods {
+
+        static final Method BEGIN;
+        static final Method END;
+        //the tag of the app category, only passed to the hidden methods before API 29
+        private static final long TRACE_TAG_APP = 1L << 12;
+        private static final boolean HIDDEN;
+
+        static {
+            Method begin = null;
+            Method end = null;
+            boolean hidden = false;
+            try {
+                if (Build.VERSION.SDK_INT >= 29) {
+                    begin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                    end = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+                } else {
+                    begin = Trace.class.getMethod("asyncTraceBegin", long.class, String.class, int.class);
+                    end = Trace.class.getMethod("asyncTraceEnd", long.class, String.class, int.class);
+                    hidden = true;
+                }
+            } catch (NoSuchMethodException e) {
+                Log.w(TAG, "Async trace sections are not available: " + e.getLocalizedMessage());
+                begin = null;
+                end = null;
+            }
+            BEGIN = begin;
+            END = end;
+            HIDDEN = hidden;
+        }
+
+        static void invoke(final Method method, final String name, final int cookie) {
+            if (method == null) return;
+            try {
+                if (HIDDEN) method.invoke(null, TRACE_TAG_APP, truncate(name), cookie);
+                else method.invoke(null, truncate(name), cookie);
+            } catch (Exception e) {
+                //tracing must never break the app
+                Log.w(TAG, "Could not trace " + name + ": " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+}
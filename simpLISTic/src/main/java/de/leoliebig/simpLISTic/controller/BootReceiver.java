@@ -4,13 +4,14 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 
-import java.util.List;
+import de.leoliebig.simpLISTic.Tracing;
 
-import de.leoliebig.simpLISTic.db.DatabaseHelper;
-import de.leoliebig.simpLISTic.model.Task;
+import rx.functions.Action0;
 
 /**
- * Receives an intent after the device booted and reschedules all task reminders.
+ * Receives an intent after the device booted and arms the alarm for the next task reminder. The alarm
+ * is armed in the background with a single indexed query, so the broadcast finishes in time no matter
+ * how many tasks are stored.
  *
  * @author info@leoliebig.de
  */
@@ -21,10 +22,20 @@ public class BootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
 
-        //get all tasks and reschedule the notification alarms
-        List<Task> tasks = DatabaseHelper.getInstance(context).getAll();
-        for(Task task: tasks){
-            NotificationHelper.updateNotification(task, task.getId(), context);
+        Tracing.begin("BootReceiver.onReceive");
+        try {
+            //alarms do not survive a reboot, reminders missed while the device was off are delivered as well
+            final PendingResult result = goAsync();
+            final int cookie = Tracing.beginAsync("BootReceiver.restore");
+            ReminderScheduler.getInstance(context).restore(new Action0() {
+                @Override
+                public void call() {
+                    Tracing.endAsync("BootReceiver.restore", cookie);
+                    result.finish();
+                }
+            });
+        } finally {
+            Tracing.end();
         }
 
     }
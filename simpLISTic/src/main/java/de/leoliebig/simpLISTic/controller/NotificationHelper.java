@@ -1,7 +1,7 @@
 package de.leoliebig.simpLISTic.controller;
 
-import android.app.AlarmManager;
 import android.app.Notification;
+import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
@@ -10,10 +10,13 @@ import android.support.v4.app.TaskStackBuilder;
 import android.support.v7.app.NotificationCompat;
 import android.util.Log;
 
-import java.util.Date;
+import java.util.List;
 
 import de.leoliebig.simpLISTic.Global;
 import de.leoliebig.simpLISTic.MainActivity;
+import de.leoliebig.simpLISTic.metrics.Counter;
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.simpLISTic.metrics.Timer;
 import de.leoliebig.simpLISTic.model.Task;
 import de.leoliebig.wundertest.R;
 
@@ -26,74 +29,132 @@ public class NotificationHelper {
 
     private static final String TAG = NotificationHelper.class.getSimpleName();
 
+    //all reminders of a delivery are grouped below a single summary
+    private static final String GROUP_REMINDERS = "reminders";
+    //task ids start at 1, so the summary does not replace the notification of a task
+    private static final int SUMMARY_ID = 0;
+    //maximum number of lines of the summary
+    private static final int MAX_SUMMARY_LINES = 5;
+
+    private static final Timer TIMER_SHOW = Metrics.timer("notification.show");
+    private static final Counter COUNTER_REMINDERS = Metrics.counter("notification.reminders");
+
     /**
      * Builds and returns a {@link Notification} for the passed {@link Task}.
      * @param task The {@link Task} to build a notification for.
+     * @param contentIntent The {@link PendingIntent} to send when the notification is clicked.
+     * @param grouped <code>true</code> if the notification is part of a group, it is silent then and only
+     *                the summary alerts the user.
      * @param context The application context.
-     * @return A {@link Notification}  object for the task with default sound, light and vibration.
+     * @return A {@link Notification}  object for the task, with default sound, light and vibration if not grouped.
      */
-    private static Notification buildNotification(@NonNull final Task task, @NonNull final Context context) {
+    private static Notification buildNotification(@NonNull final Task task, @NonNull final PendingIntent contentIntent,
+                                                  final boolean grouped, @NonNull final Context context) {
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context);
         builder.setSmallIcon(R.drawable.menu_okay);
         builder.setContentTitle(task.getTitle());
         builder.setContentText(context.getString(R.string.notification_reminder));
+        if(grouped) builder.setGroup(GROUP_REMINDERS);
+        else builder.setDefaults(Notification.DEFAULT_SOUND|Notification.DEFAULT_LIGHTS|Notification.DEFAULT_VIBRATE);
+        builder.setAutoCancel(true);
+        builder.setContentIntent(contentIntent);
+        return builder.build();
+    }
+
+    /**
+     * Builds the summary of the passed tasks, it shows the titles of the first tasks and the number of
+     * the remaining ones.
+     * @param tasks The tasks of the delivery, at least two.
+     * @param contentIntent The {@link PendingIntent} to send when the notification is clicked.
+     * @param context The application context.
+     * @return A {@link Notification} with default sound, light and vibration.
+     */
+    private static Notification buildSummary(@NonNull final List<Task> tasks, @NonNull final PendingIntent contentIntent,
+                                             @NonNull final Context context) {
+
+        String title = context.getString(R.string.notification_reminders_summary, tasks.size());
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        style.setBigContentTitle(title);
+        int lines = Math.min(tasks.size(), MAX_SUMMARY_LINES);
+        for(int i = 0; i < lines; i++) style.addLine(tasks.get(i).getTitle());
+        if(tasks.size() > lines) style.setSummaryText(context.getString(R.string.notification_reminders_more, tasks.size() - lines));
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context);
+        builder.setSmallIcon(R.drawable.menu_okay);
+        builder.setContentTitle(title);
+        builder.setContentText(tasks.get(0).getTitle());
+        builder.setNumber(tasks.size());
+        builder.setStyle(style);
+        builder.setGroup(GROUP_REMINDERS);
+        builder.setGroupSummary(true);
         builder.setDefaults(Notification.DEFAULT_SOUND|Notification.DEFAULT_LIGHTS|Notification.DEFAULT_VIBRATE);
         builder.setAutoCancel(true);
+        builder.setContentIntent(contentIntent);
+        return builder.build();
+    }
+
+    /**
+     * Creates the {@link PendingIntent} that opens the {@link MainActivity} with its parent stack. It is the
+     * same for all notifications, so it is only created once per delivery.
+     * @param context The application context.
+     * @return The {@link PendingIntent} to use as content intent of the notifications.
+     */
+    private static PendingIntent createContentIntent(@NonNull final Context context) {
+
         Intent resultIntent = new Intent(context, MainActivity.class);
 
         TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
         stackBuilder.addParentStack(MainActivity.class);
         stackBuilder.addNextIntent(resultIntent);
 
-        PendingIntent resultPendingIntent = stackBuilder.getPendingIntent(
+        return stackBuilder.getPendingIntent(
                 0,
                 PendingIntent.FLAG_UPDATE_CURRENT
         );
-        builder.setContentIntent(resultPendingIntent);
-
-        return builder.build();
     }
 
     /**
-     * Updates existing notifications for the passed {@link Task}. If the task has no scheduled notification
-     * a new one will be created. If the task's reminder date has changed, the scheduled notification will be
-     * deleted and a new one is created. If the task's reminder date was set to null, the scheduled notification
-     * for this task will be deleted. Tasks with reminder dates for the past will be ignored.
+     * Shows the reminder notifications of the passed tasks, previous notifications of the tasks are replaced.
+     * The notifications are built from the passed tasks as they were read when the reminders became due,
+     * so they always show the current titles.
      *
-     * @param task The {@link Task} to schedule or update the notification for.
-     * @param taskId The id of the task as used in the database. This is an additional argument to allow
+     * <p>A single reminder is shown as a normal notification. Several reminders are grouped below one summary
+     * that alerts the user once, the reminders themselves are silent. The {@link ReminderScheduler} limits
+     * the number of reminders of a single delivery.</p>
+     * @param tasks The tasks to show the notifications for, sorted by their reminder dates.
      * @param context The application context.
      */
-    public static void updateNotification(@NonNull final Task task, long taskId, @NonNull final Context context){
-
-        Context appContext = context.getApplicationContext();
-
-        Intent notificationIntent = new Intent(appContext, NotificationReceiver.class);
-        notificationIntent.putExtra(Global.INTENT_EXTRA_TASK_TITLE, task.getTitle());
-        notificationIntent.putExtra(Global.INTENT_EXTRA_NOTIFICATION, buildNotification(task, appContext));
-        notificationIntent.putExtra(Global.INTENT_EXTRA_TASK_ID, task.getId());
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                appContext,
-                (int) taskId, //TODO: this is a problem if there are more tasks than the range of int provides --> hash
-                notificationIntent,
-                PendingIntent.FLAG_ONE_SHOT
-        );
+    public static void showNotifications(@NonNull final List<Task> tasks, @NonNull final Context context){
 
-        AlarmManager alarmManager = (AlarmManager) appContext.getSystemService(Context.ALARM_SERVICE);
-        alarmManager.cancel(pendingIntent);
+        if(tasks.isEmpty()) return;
 
-        Date now = new Date();
-        Date reminderDate = task.getReminder();
+        long start = TIMER_SHOW.start();
+        try {
+            notify(tasks, context);
+        } finally {
+            TIMER_SHOW.stop(start);
+        }
+        COUNTER_REMINDERS.add(tasks.size());
+    }
 
-        //reschedule if the task is not done, the reminder date is set and not in the past
-        if(reminderDate != null && reminderDate.after(now) && !task.isDone()){
-            if(Global.DEBUG) Log.d(TAG, "Updated notification for " + task.getTitle());
-            alarmManager.set(AlarmManager.RTC_WAKEUP, task.getReminder().getTime(), pendingIntent);
+    private static void notify(@NonNull final List<Task> tasks, @NonNull final Context context){
+
+        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        PendingIntent contentIntent = createContentIntent(context);
+
+        if(tasks.size() == 1){
+            Task task = tasks.get(0);
+            notificationManager.notify((int) task.getId(), buildNotification(task, contentIntent, false, context));
+            return;
         }
-        else{
-            if(Global.DEBUG) Log.d(TAG, "Cancelled notification for " + task.getTitle());
+
+        for(int i = 0; i < tasks.size(); i++){
+            Task task = tasks.get(i);
+            notificationManager.notify((int) task.getId(), buildNotification(task, contentIntent, true, context));
         }
+        notificationManager.notify(SUMMARY_ID, buildSummary(tasks, contentIntent, context));
+        if(Global.DEBUG) Log.d(TAG, "Showed " + tasks.size() + " reminder(s) with a summary");
     }
 
 }
@@ -1,16 +1,17 @@
 package de.leoliebig.simpLISTic.controller;
 
-import android.app.Notification;
-import android.app.NotificationManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.util.Log;
 
-import de.leoliebig.simpLISTic.Global;
+import de.leoliebig.simpLISTic.Tracing;
+
+import rx.functions.Action0;
 
 /**
- * Receives an intent by the {@link android.app.AlarmManager} whenever a task reminder notification
- * should be shown.
+ * Receives an intent by the {@link android.app.AlarmManager} whenever the next task reminder is due,
+ * the {@link ReminderScheduler} delivers all due reminders and arms the alarm for the next one.
  *
  * @author info@leoliebig.de
  */
@@ -21,11 +22,26 @@ public class NotificationReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
 
-        //create and show the notification
-        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        Notification notification = intent.getParcelableExtra(Global.INTENT_EXTRA_NOTIFICATION);
-        long id = intent.getLongExtra(Global.INTENT_EXTRA_TASK_ID, -1);
-        notificationManager.notify((int) id, notification);
+        //alarms of older versions were registered per task, their reminders are delivered by the scheduler
+        if(!ReminderScheduler.ACTION_DELIVER_REMINDERS.equals(intent.getAction())){
+            Log.w(TAG, "Ignoring reminder alarm without action");
+            return;
+        }
 
+        Tracing.begin("NotificationReceiver.onReceive");
+        try {
+            //keeps the process alive until the reminders were delivered in the background
+            final PendingResult result = goAsync();
+            final int cookie = Tracing.beginAsync("NotificationReceiver.deliver");
+            ReminderScheduler.getInstance(context).deliverDueRemindersAsync(new Action0() {
+                @Override
+                public void call() {
+                    Tracing.endAsync("NotificationReceiver.deliver", cookie);
+                    result.finish();
+                }
+            });
+        } finally {
+            Tracing.end();
+        }
     }
 }
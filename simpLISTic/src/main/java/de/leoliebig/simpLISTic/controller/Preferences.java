@@ -13,6 +13,13 @@ import android.support.annotation.NonNull;
 public class Preferences {
 
     private static final String KEY_HIDE_DONE_TASKS="hideDoneTasks";
+    private static final String KEY_REMINDERS_DELIVERED_UNTIL="remindersDeliveredUntil";
+    private static final String KEY_REMINDER_WINDOW="reminderWindow";
+    private static final String KEY_LAST_REMINDER_DELIVERY="lastReminderDelivery";
+    private static final String KEY_METRICS_ENABLED="metricsEnabled";
+
+    /** Default minimum time in milliseconds between two deliveries of reminders. */
+    public static final long DEFAULT_REMINDER_WINDOW = 60 * 1000;
 
     /**
      * Returns the default {@link SharedPreferences} of the application
@@ -47,4 +54,97 @@ public class Preferences {
         return prefs.getBoolean(KEY_HIDE_DONE_TASKS, false);
     }
 
+    /**
+     * Sets the time until which all due reminders were delivered.
+     * @param applicationContext The application context.
+     * @param timeInMillis The time in milliseconds.
+     */
+    public static void setRemindersDeliveredUntil(@NonNull final Context applicationContext, final long timeInMillis){
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putLong(KEY_REMINDERS_DELIVERED_UNTIL, timeInMillis);
+        editor.commit();
+    }
+
+    /**
+     * Returns the time until which all due reminders were delivered.
+     * @param applicationContext The application context.
+     * @return The time in milliseconds or -1 if no reminders were delivered yet.
+     */
+    public static long getRemindersDeliveredUntil(@NonNull final Context applicationContext){
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        return prefs.getLong(KEY_REMINDERS_DELIVERED_UNTIL, -1);
+    }
+
+    /**
+     * Sets the minimum time between two deliveries of reminders. Reminders that become due within this
+     * window after a delivery are collected and delivered together at its end.
+     * @param applicationContext The application context.
+     * @param windowInMillis The window in milliseconds, 0 delivers every reminder right when it is due.
+     */
+    public static void setReminderWindow(@NonNull final Context applicationContext, final long windowInMillis){
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putLong(KEY_REMINDER_WINDOW, windowInMillis);
+        editor.commit();
+    }
+
+    /**
+     * Returns the minimum time between two deliveries of reminders.
+     * @param applicationContext The application context.
+     * @return The window in milliseconds, {@link #DEFAULT_REMINDER_WINDOW} if it was never set.
+     */
+    public static long getReminderWindow(@NonNull final Context applicationContext){
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        return prefs.getLong(KEY_REMINDER_WINDOW, DEFAULT_REMINDER_WINDOW);
+    }
+
+    /**
+     * Sets the time of the last delivery that showed reminders.
+     * @param applicationContext The application context.
+     * @param timeInMillis The time in milliseconds.
+     */
+    public static void setLastReminderDelivery(@NonNull final Context applicationContext, final long timeInMillis){
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putLong(KEY_LAST_REMINDER_DELIVERY, timeInMillis);
+        editor.commit();
+    }
+
+    /**
+     * Returns the time of the last delivery that showed reminders.
+     * @param applicationContext The application context.
+     * @return The time in milliseconds or 0 if no reminders were shown yet.
+     */
+    public static long getLastReminderDelivery(@NonNull final Context applicationContext){
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        return prefs.getLong(KEY_LAST_REMINDER_DELIVERY, 0);
+    }
+
+    /**
+     * Sets whether the metrics of the app should be recorded, e.g. to collect them from a release build.
+     * @param applicationContext The application context.
+     * @param metricsEnabled <code>true</code> if the metrics should be recorded, otherwise <code>false</code>.
+     */
+    public static void setMetricsEnabled(@NonNull final Context applicationContext, final boolean metricsEnabled){
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putBoolean(KEY_METRICS_ENABLED, metricsEnabled);
+        editor.commit();
+    }
+
+    /**
+     * Returns whether the metrics of the app should be recorded.
+     * @param applicationContext The application context.
+     * @return <code>true</code> if the metrics should be recorded, <code>false</code> if it was never set.
+     */
+    public static boolean getMetricsEnabled(@NonNull final Context applicationContext){
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(applicationContext);
+        return prefs.getBoolean(KEY_METRICS_ENABLED, false);
+    }
+
 }
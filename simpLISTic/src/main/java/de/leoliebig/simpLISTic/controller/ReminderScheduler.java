@@ -0,0 +1,276 @@
+package de.leoliebig.simpLISTic.controller;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.List;
+
+import de.leoliebig.simpLISTic.Global;
+import de.leoliebig.simpLISTic.db.DatabaseHelper;
+import de.leoliebig.simpLISTic.db.Reminder;
+import de.leoliebig.simpLISTic.db.TaskChange;
+import de.leoliebig.simpLISTic.model.Reminders;
+import de.leoliebig.simpLISTic.model.Task;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Schedules the reminders of all tasks with a single alarm. Only the earliest reminder that was not
+ * delivered yet is armed, when it fires every reminder that is due by then is delivered and the next one
+ * is armed. Reminders that were missed while the device was off are delivered after the next start.
+ * Deliveries are at least {@link Preferences#getReminderWindow(Context)} apart, reminders that become
+ * due within this window are collected and delivered together with a single summary notification.
+ * A delivery shows at most {@value #MAX_REMINDERS_PER_DELIVERY} reminders, the remaining ones stay
+ * pending and are delivered at the end of the next window.
+ * The next reminder is read with an indexed query on the due date, so the number of system calls
+ * does not depend on the number of tasks with reminders.
+ *
+ * <p>The alarm is kept up to date by the changes published by the {@link DatabaseHelper}. Most changes
+ * are handled without a query, only changes of the armed task require reading the next reminder again.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public class ReminderScheduler {
+
+    private static final String TAG = ReminderScheduler.class.getSimpleName();
+
+    /** Action of the intent sent by the alarm. */
+    public static final String ACTION_DELIVER_REMINDERS = "de.leoliebig.simpLISTic.action.DELIVER_REMINDERS";
+
+    /** Maximum number of reminders shown by a single delivery. */
+    public static final int MAX_REMINDERS_PER_DELIVERY = 10;
+
+    private static ReminderScheduler instance = null;
+
+    private final Context appContext;
+    private final DatabaseHelper dbHelper;
+    private final AlarmManager alarmManager;
+    //handles the published changes after the lock of the database helper was released
+    private final Scheduler.Worker worker = Schedulers.io().createWorker();
+
+    //the following fields are guarded by this instance
+    private boolean started = false;
+    //all reminders until this time in milliseconds were delivered
+    private long deliveredUntil = -1;
+    //time of the last delivery that showed notifications, -1 until read from the preferences
+    private long lastDelivery = -1;
+    //the armed task and its reminder, Reminders.NONE if no alarm is armed
+    private long armedId = Task.TRANSIENT;
+    private long armedDueDate = Reminders.NONE;
+
+    /**
+     * Returns the {@link ReminderScheduler} instance.
+     * @param context The application context.
+     */
+    public static synchronized ReminderScheduler getInstance(@NonNull final Context context) {
+
+        if (instance == null) {
+            instance = new ReminderScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReminderScheduler(@NonNull final Context appContext) {
+        this.appContext = appContext;
+        this.dbHelper = DatabaseHelper.getInstance(appContext);
+        this.alarmManager = (AlarmManager) appContext.getSystemService(Context.ALARM_SERVICE);
+    }
+
+    /**
+     * Starts following the changes of the tasks and arms the alarm for the next reminder in the
+     * background. Further calls have no effect.
+     */
+    public synchronized void start() {
+
+        if (started) return;
+        started = true;
+
+        dbHelper.observeChanges().subscribe(new Action1<TaskChange>() {
+            @Override
+            public void call(final TaskChange change) {
+                worker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        onChange(change);
+                    }
+                });
+            }
+        });
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                rescheduleNext();
+            }
+        });
+    }
+
+    /**
+     * Starts the scheduler if needed, see {@link #start()}, and invokes the passed action on a background
+     * thread as soon as the alarm for the next reminder was armed. Used after a reboot, when all alarms
+     * are lost.
+     * @param onArmed The action to invoke, e.g. for finishing an asynchronous broadcast.
+     */
+    public void restore(@NonNull final Action0 onArmed) {
+        start();
+        //the worker runs its actions in order, so the alarm was armed by the action scheduled by start()
+        worker.schedule(onArmed);
+    }
+
+    /**
+     * Delivers all due reminders in the background, see {@link #deliverDueReminders()}.
+     * @param onDelivered The action to invoke on a background thread after the reminders were delivered.
+     */
+    public void deliverDueRemindersAsync(@NonNull final Action0 onDelivered) {
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    deliverDueReminders();
+                } finally {
+                    onDelivered.call();
+                }
+            }
+        });
+    }
+
+    /**
+     * Delivers the reminders that became due since the last delivery and arms the alarm for the next
+     * reminder. If more than {@value #MAX_REMINDERS_PER_DELIVERY} reminders are due the earliest ones are
+     * delivered, the others are armed for the end of the next window. This operation is performed in an
+     * synchronous manner.
+     */
+    public synchronized void deliverDueReminders() {
+
+        long now = System.currentTimeMillis();
+        List<Task> dueTasks = dbHelper.getDueTasks(getDeliveredUntil(), now);
+        int count = getDeliveryCount(dueTasks);
+        List<Task> delivered = dueTasks.subList(0, count);
+        NotificationHelper.showNotifications(delivered, appContext);
+
+        if (count > 0) {
+            lastDelivery = now;
+            Preferences.setLastReminderDelivery(appContext, now);
+        }
+        //deferred reminders are due after the last delivered one, so they are read again
+        deliveredUntil = count < dueTasks.size() ? Reminders.getPendingDueDate(dueTasks.get(count - 1)) : now;
+        Preferences.setRemindersDeliveredUntil(appContext, deliveredUntil);
+
+        if (Global.DEBUG) Log.d(TAG, "Delivered " + count + " of " + dueTasks.size() + " due reminder(s)");
+        rescheduleNext();
+    }
+
+    /**
+     * Returns the number of the passed reminders to deliver now. Reminders with the same due date are
+     * delivered together, because the delivered time range ends at a due date.
+     * @param dueTasks The due tasks sorted by their reminder dates.
+     * @return The number of tasks from the start of the list to deliver.
+     */
+    private static int getDeliveryCount(@NonNull final List<Task> dueTasks) {
+
+        if (dueTasks.size() <= MAX_REMINDERS_PER_DELIVERY) return dueTasks.size();
+        int count = MAX_REMINDERS_PER_DELIVERY;
+        long deferredDueDate = Reminders.getPendingDueDate(dueTasks.get(count));
+        //reminders due at the same time as the first deferred one are deferred as well
+        while (count > 0 && Reminders.getPendingDueDate(dueTasks.get(count - 1)) == deferredDueDate) count--;
+        if (count > 0) return count;
+        //all of the first reminders are due at once, none of them can be deferred
+        count = MAX_REMINDERS_PER_DELIVERY;
+        while (count < dueTasks.size() && Reminders.getPendingDueDate(dueTasks.get(count)) == deferredDueDate) count++;
+        return count;
+    }
+
+    /**
+     * Updates the alarm after a single change of the tasks.
+     * @param change The {@link TaskChange} published by the {@link DatabaseHelper}.
+     */
+    private synchronized void onChange(@NonNull final TaskChange change) {
+
+        switch (change.getType()) {
+            case INSERTED:
+            case UPDATED:
+                long dueDate = Reminders.getPendingDueDate(change.getTask());
+                if (change.getId() == armedId) {
+                    //the armed reminder was changed, another task may be next now
+                    if (dueDate != armedDueDate) rescheduleNext();
+                } else if (Reminders.precedes(dueDate, armedDueDate, getDeliveredUntil())) {
+                    arm(change.getId(), dueDate);
+                }
+                break;
+            case DELETED:
+                if (change.getId() == armedId) rescheduleNext();
+                break;
+            case CLEARED:
+                rescheduleNext();
+                break;
+            case MOVED:
+            case REBALANCED:
+                //the list position does not affect reminders
+                break;
+        }
+    }
+
+    /**
+     * Reads the earliest reminder that was not delivered yet from the database and arms the alarm for
+     * it. The alarm fires immediately if the reminder is already due.
+     */
+    private synchronized void rescheduleNext() {
+        Reminder next = dbHelper.getNextReminder(getDeliveredUntil());
+        if (next != null) arm(next.getTaskId(), next.getDueDate());
+        else cancel();
+    }
+
+    private long getDeliveredUntil() {
+        if (deliveredUntil == -1) {
+            deliveredUntil = Preferences.getRemindersDeliveredUntil(appContext);
+            //reminders that were due before the first start are not delivered
+            if (deliveredUntil == -1) {
+                deliveredUntil = System.currentTimeMillis();
+                Preferences.setRemindersDeliveredUntil(appContext, deliveredUntil);
+            }
+        }
+        return deliveredUntil;
+    }
+
+    private long getLastDelivery() {
+        if (lastDelivery == -1) lastDelivery = Preferences.getLastReminderDelivery(appContext);
+        return lastDelivery;
+    }
+
+    private void arm(final long id, final long dueDate) {
+
+        //reminders within the window after the last delivery are collected until its end
+        long triggerTime = Reminders.getTriggerTime(dueDate, getLastDelivery(), Preferences.getReminderWindow(appContext));
+
+        //an alarm with the same intent replaces the previous one
+        PendingIntent pendingIntent = getPendingIntent();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, triggerTime, pendingIntent);
+        }
+        armedId = id;
+        armedDueDate = dueDate;
+        if (Global.DEBUG) Log.d(TAG, "Armed reminder of task " + id + " at " + triggerTime);
+    }
+
+    private void cancel() {
+        alarmManager.cancel(getPendingIntent());
+        armedId = Task.TRANSIENT;
+        armedDueDate = Reminders.NONE;
+        if (Global.DEBUG) Log.d(TAG, "No pending reminders");
+    }
+
+    private PendingIntent getPendingIntent() {
+        Intent intent = new Intent(appContext, NotificationReceiver.class);
+        intent.setAction(ACTION_DELIVER_REMINDERS);
+        return PendingIntent.getBroadcast(appContext, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+}
@@ -7,25 +7,65 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 
 import de.leoliebig.wundertest.R;
+import de.leoliebig.simpLISTic.AllocationCheck;
+import de.leoliebig.simpLISTic.Tracing;
+import de.leoliebig.simpLISTic.db.TaskCursorList;
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.simpLISTic.metrics.Timer;
 import de.leoliebig.simpLISTic.model.Task;
 
 /**
  * Implements a custom RecyclerView adapter for populating list items with the
  * data of {@link Task} objects.
  *
+ * <p>If done tasks are hidden the adapter only shows a filtered view of the list. The adapter positions
+ * are mapped to the indices of the visible tasks in the list, so hidden tasks are neither bound nor
+ * laid out. Changes of the list have to be reported with the list indices by the notifyTask methods,
+ * which keep the mapping up to date and notify the affected adapter positions.</p>
+ *
+ * <p>The item ids are the ids of the tasks. Changes of single values can be reported with a
+ * {@link Change} payload, which only updates the affected view of the list item.</p>
+ *
+ * <p>The listeners of a list item are created once per {@link ViewHolder} and resolve the task by its
+ * adapter position when they are called, binding only sets the title and the checkbox. Binding a task of
+ * a {@link TaskCursorList} that was not loaded yet requests its page, see {@link TaskCursorList#peek(int)}.
+ * The objects allocated while setting the views are counted by an {@link AllocationCheck} in debug builds.</p>
+ *
  * @author info@leoliebig.de
  */
 public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.ViewHolder> {
 
+    /**
+     * Payloads for {@link #notifyTaskChanged(int, Change)} describing which value of a task changed.
+     */
+    public enum Change {
+        /** The done state was toggled. */
+        DONE,
+        /** The title was changed. */
+        TITLE,
+        /** The reminder was changed. */
+        REMINDER
+    }
+
+    private static final Timer TIMER_CREATE = Metrics.timer("adapter.create");
+    private static final Timer TIMER_BIND = Metrics.timer("adapter.bind");
+    private static final Timer TIMER_BIND_PAYLOAD = Metrics.timer("adapter.bindPayload");
+    private static final AllocationCheck ALLOCATIONS_BIND = new AllocationCheck("adapter.bind");
+    private static final AllocationCheck ALLOCATIONS_BIND_PAYLOAD = new AllocationCheck("adapter.bindPayload");
+
     private final ItemActionListener listener;
     private List<Task> tasks;
     private boolean hideDoneTasks =false;
+    //sorted list indices of the visible tasks, only used if done tasks are hidden
+    private int[] visibleIndices = new int[0];
+    private int visibleCount = 0;
 
 
     /**
@@ -35,65 +75,342 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.ViewHolder> {
     public TaskAdapter(@NonNull final List<Task> tasks, @NonNull final ItemActionListener listener) {
         this.tasks = tasks;
         this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Returns the values that differ between the passed versions of a task.
+     * @param oldTask The previous version of the task.
+     * @param newTask The current version of the task.
+     * @return The set of {@link Change} payloads, empty if no shown value differs.
+     */
+    public static EnumSet<Change> getChanges(@NonNull final Task oldTask, @NonNull final Task newTask){
+        EnumSet<Change> changes = EnumSet.noneOf(Change.class);
+        if(oldTask.isDone() != newTask.isDone()) changes.add(Change.DONE);
+        if(oldTask.getTitle() != null ? !oldTask.getTitle().equals(newTask.getTitle()) : newTask.getTitle() != null){
+            changes.add(Change.TITLE);
+        }
+        if(oldTask.getReminder() != null ? !oldTask.getReminder().equals(newTask.getReminder()) : newTask.getReminder() != null){
+            changes.add(Change.REMINDER);
+        }
+        return changes;
+    }
+
+    /**
+     * Returns the index in the list of the task shown at the passed adapter position.
+     * @param position The adapter position.
+     * @return The index of the task in the list.
+     */
+    public int getListIndex(final int position){
+        return hideDoneTasks ? visibleIndices[position] : position;
+    }
+
+    /**
+     * Returns the adapter position of the task at the passed list index.
+     * @param listIndex The index of the task in the list.
+     * @return The adapter position or {@link RecyclerView#NO_POSITION} if the task is hidden.
+     */
+    public int getPosition(final int listIndex){
+        if(!hideDoneTasks) return listIndex;
+        int position = Arrays.binarySearch(visibleIndices, 0, visibleCount, listIndex);
+        return position >= 0 ? position : RecyclerView.NO_POSITION;
     }
 
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
 
-        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item_task, parent, false);
-        return new ViewHolder(itemView);
+        Tracing.begin("TaskAdapter.onCreateViewHolder");
+        long start = TIMER_CREATE.start();
+        try {
+            View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item_task, parent, false);
+            final ViewHolder holder = new ViewHolder(itemView);
+
+            //the listeners are created once per view holder and resolve the task when they are called
+            holder.onCheckedChangeListener = new CompoundButton.OnCheckedChangeListener() {
+                @Override
+                public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                    int position = holder.getAdapterPosition();
+                    if (listener != null && position != RecyclerView.NO_POSITION) {
+                        listener.onItemChecked(tasks.get(getListIndex(position)), position, isChecked);
+                    }
+                }
+            };
+            holder.label.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int position = holder.getAdapterPosition();
+                    if (listener != null && position != RecyclerView.NO_POSITION) {
+                        listener.onTitleClicked(tasks.get(getListIndex(position)));
+                    }
+                }
+            });
+            return holder;
+        } finally {
+            TIMER_CREATE.stop(start);
+            Tracing.end();
+        }
     }
 
     @Override
-    public void onBindViewHolder(ViewHolder holder, int position) {
-
-        final Task task = tasks.get(position);
+    public long getItemId(int position) {
+        int listIndex = getListIndex(position);
+        //does not load the task if it was not loaded yet
+        if(tasks instanceof TaskCursorList) return ((TaskCursorList) tasks).getId(listIndex);
+        return tasks.get(listIndex).getId();
+    }
 
-        //remove the old listeners
-        holder.checkBox.setOnCheckedChangeListener(null);
-        holder.label.setOnClickListener(null);
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
 
-        //hide done tasks
-        if (hideDoneTasks && task.isDone()) {
-            holder.setVisibility(false);
+        if(payloads.isEmpty()){
+            onBindViewHolder(holder, position);
             return;
-        } else {
-            holder.setVisibility(true);
         }
 
-        //populate the list view with data from the task
-        holder.label.setText(task.getTitle());
-        holder.checkBox.setChecked(task.isDone());
+        Task task = peekTask(getListIndex(position));
+        if(task == null){
+            onBindViewHolder(holder, position);
+            return;
+        }
 
-        //set the new listeners
-        holder.checkBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
-            @Override
-            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                if (listener != null) listener.onItemChecked(task, isChecked);
+        Tracing.begin("TaskAdapter.onBindViewHolder.payload");
+        long start = TIMER_BIND_PAYLOAD.start();
+        int allocations = ALLOCATIONS_BIND_PAYLOAD.start();
+        try {
+            //indexed loop, an iterator would be allocated for every bind
+            for(int i = 0; i < payloads.size(); i++){
+                switch ((Change) payloads.get(i)){
+                    case DONE:
+                        //must not report the change to the listener again
+                        holder.checkBox.setOnCheckedChangeListener(null);
+                        holder.checkBox.setChecked(task.isDone());
+                        holder.checkBox.setOnCheckedChangeListener(holder.onCheckedChangeListener);
+                        break;
+                    case TITLE:
+                        holder.label.setText(task.getTitle());
+                        break;
+                    case REMINDER:
+                        //the reminder is not shown in the list item
+                        break;
+                }
             }
-        });
+        } finally {
+            ALLOCATIONS_BIND_PAYLOAD.stop(allocations);
+            TIMER_BIND_PAYLOAD.stop(start);
+            Tracing.end();
+        }
+    }
 
-        holder.label.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (listener != null) listener.onTitleClicked(task);
-            }
-        });
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+
+        //never reads from the database, tasks that were not loaded yet are bound again after loading
+        Tracing.begin("TaskAdapter.onBindViewHolder");
+        long start = TIMER_BIND.start();
+        int allocations = -1;
+        try {
+            int listIndex = getListIndex(position);
+            Task task = peekTask(listIndex);
+            //only counts setting the views, requesting the page of a task that was not loaded allocates
+            allocations = ALLOCATIONS_BIND.start();
+
+            //setting the state of the recycled checkbox must not call the listener
+            holder.checkBox.setOnCheckedChangeListener(null);
+
+            //populate the list view with data from the task
+            holder.label.setText(task != null ? task.getTitle() : "");
+            holder.checkBox.setChecked(task != null ? task.isDone() : isDone(listIndex));
 
+            holder.checkBox.setOnCheckedChangeListener(holder.onCheckedChangeListener);
+        } finally {
+            ALLOCATIONS_BIND.stop(allocations);
+            TIMER_BIND.stop(start);
+            Tracing.end();
+        }
     }
 
     @Override
     public int getItemCount() {
-        return tasks.size();
+        return hideDoneTasks ? visibleCount : tasks.size();
     }
 
+    /**
+     * Replaces the tasks shown by the adapter. The caller has to notify the adapter about the change
+     * with the adapter positions of the visible tasks.
+     * @param tasks The new {@link java.util.List} of {@link Task} objects.
+     */
+    public void setTasks(@NonNull final List<Task> tasks){
+        this.tasks = tasks;
+        updateVisibleIndices();
+    }
 
     /**
-     * Controls whether done tasks are hidden or not.
+     * Controls whether done tasks are hidden or not. The caller has to notify the adapter about the change.
      * @param hideDoneTasks <code>true</code> if done tasks should be hidden, otherwise <code>false</code>.
      */
     public void setDoneTasksHidden(final boolean hideDoneTasks){
         this.hideDoneTasks = hideDoneTasks;
+        updateVisibleIndices();
+    }
+
+    /**
+     * Returns whether done tasks are hidden.
+     * @return <code>true</code> if the adapter only shows tasks that are not done.
+     */
+    public boolean isDoneTasksHidden(){
+        return hideDoneTasks;
+    }
+
+    /**
+     * Is called after a task was inserted into the list.
+     * @param listIndex The index of the inserted task in the list.
+     */
+    public void notifyTaskInserted(final int listIndex){
+        if(!hideDoneTasks){
+            notifyItemInserted(listIndex);
+            return;
+        }
+
+        int position = shiftVisibleIndices(listIndex, 1);
+        if(!isDone(listIndex)){
+            insertVisibleIndex(position, listIndex);
+            notifyItemInserted(position);
+        }
+    }
+
+    /**
+     * Is called after a task was removed from the list.
+     * @param listIndex The previous index of the removed task in the list.
+     */
+    public void notifyTaskRemoved(final int listIndex){
+        if(!hideDoneTasks){
+            notifyItemRemoved(listIndex);
+            return;
+        }
+
+        int position = getPosition(listIndex);
+        if(position != RecyclerView.NO_POSITION){
+            removeVisibleIndex(position);
+            notifyItemRemoved(position);
+        }
+        shiftVisibleIndices(listIndex + 1, -1);
+    }
+
+    /**
+     * Is called after a task of the list was changed, the whole list item is bound again. If the task was done or undone while done tasks
+     * are hidden it is removed from or inserted into the shown items.
+     * @param listIndex The index of the changed task in the list.
+     */
+    public void notifyTaskChanged(final int listIndex){
+        notifyTaskChanged(listIndex, null);
+    }
+
+    /**
+     * Is called after a single value of a task of the list was changed, only the affected view of
+     * the list item is updated. If the task was done or undone while done tasks are hidden it is
+     * removed from or inserted into the shown items.
+     * @param listIndex The index of the changed task in the list.
+     * @param change The changed value or <code>null</code> to bind the whole list item.
+     */
+    public void notifyTaskChanged(final int listIndex, final Change change){
+        if(!hideDoneTasks){
+            notifyItemChanged(listIndex, change);
+            return;
+        }
+
+        int position = getPosition(listIndex);
+        boolean visible = !isDone(listIndex);
+        if(position != RecyclerView.NO_POSITION){
+            if(visible){
+                notifyItemChanged(position, change);
+            }
+            else{
+                removeVisibleIndex(position);
+                notifyItemRemoved(position);
+            }
+        }
+        else if(visible){
+            position = -(Arrays.binarySearch(visibleIndices, 0, visibleCount, listIndex) + 1);
+            insertVisibleIndex(position, listIndex);
+            notifyItemInserted(position);
+        }
+    }
+
+    /**
+     * Is called after a task was moved to another index of the list.
+     * @param fromListIndex The previous index of the task in the list.
+     * @param toListIndex The new index of the task in the list.
+     */
+    public void notifyTaskMoved(final int fromListIndex, final int toListIndex){
+        if(!hideDoneTasks){
+            notifyItemMoved(fromListIndex, toListIndex);
+            return;
+        }
+
+        int fromPosition = getPosition(fromListIndex);
+        if(fromPosition != RecyclerView.NO_POSITION) removeVisibleIndex(fromPosition);
+        shiftVisibleIndices(fromListIndex + 1, -1);
+        int toPosition = shiftVisibleIndices(toListIndex, 1);
+        if(fromPosition != RecyclerView.NO_POSITION){
+            insertVisibleIndex(toPosition, toListIndex);
+            notifyItemMoved(fromPosition, toPosition);
+        }
+    }
+
+    /**
+     * Rebuilds the mapping of the visible tasks. Only reads the done column of tasks that were not
+     * created yet.
+     */
+    private void updateVisibleIndices(){
+        visibleCount = 0;
+        if(!hideDoneTasks) return;
+
+        int size = tasks.size();
+        if(visibleIndices.length < size) visibleIndices = new int[size];
+        for(int i = 0; i < size; i++){
+            if(!isDone(i)) visibleIndices[visibleCount++] = i;
+        }
+    }
+
+    /**
+     * Adds the passed offset to all visible list indices that are larger or equal to the passed index.
+     * @return The adapter position of the first shifted index.
+     */
+    private int shiftVisibleIndices(final int fromListIndex, final int offset){
+        int position = Arrays.binarySearch(visibleIndices, 0, visibleCount, fromListIndex);
+        if(position < 0) position = -(position + 1);
+        for(int i = position; i < visibleCount; i++) visibleIndices[i] += offset;
+        return position;
+    }
+
+    private void insertVisibleIndex(final int position, final int listIndex){
+        if(visibleCount == visibleIndices.length){
+            visibleIndices = Arrays.copyOf(visibleIndices, Math.max(16, visibleCount * 2));
+        }
+        System.arraycopy(visibleIndices, position, visibleIndices, position + 1, visibleCount - position);
+        visibleIndices[position] = listIndex;
+        visibleCount++;
+    }
+
+    private void removeVisibleIndex(final int position){
+        System.arraycopy(visibleIndices, position + 1, visibleIndices, position, visibleCount - position - 1);
+        visibleCount--;
+    }
+
+    /**
+     * Returns the task at the passed list index without reading it from the database.
+     * @param listIndex The index of the task in the list.
+     * @return The {@link Task} or <code>null</code> if it is being loaded, see {@link TaskCursorList#peek(int)}.
+     */
+    private Task peekTask(final int listIndex){
+        if(tasks instanceof TaskCursorList) return ((TaskCursorList) tasks).peek(listIndex);
+        return tasks.get(listIndex);
+    }
+
+    private boolean isDone(final int listIndex){
+        //does not load the task if it was not loaded yet
+        if(tasks instanceof TaskCursorList) return ((TaskCursorList) tasks).isDone(listIndex);
+        return tasks.get(listIndex).isDone();
     }
 
     /**
@@ -103,41 +420,18 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.ViewHolder> {
         public CheckBox checkBox;
         public TextView label;
         private View view;
-        private int marginBottom;
+        private CompoundButton.OnCheckedChangeListener onCheckedChangeListener;
 
         public ViewHolder(View itemView) {
             super(itemView);
             view = itemView;
             checkBox = (CheckBox) itemView.findViewById(R.id.list_item_checkbox);
             label = (TextView) itemView.findViewById(R.id.list_item_title);
-
-            marginBottom = ((RecyclerView.LayoutParams) view.getLayoutParams()).bottomMargin;
         }
 
         public void setBackgroundColor(int color){
             view.setBackgroundColor(color);
         }
-
-        /**
-         * Sets the visibility of a task list item.
-         * @param visible <code>true</code> if the task list item should be visible, otherwise <code>false</code>.
-         */
-        public void setVisibility(boolean visible){
-
-            RecyclerView.LayoutParams params = new RecyclerView.LayoutParams(RecyclerView.LayoutParams.MATCH_PARENT,0);
-
-            if(visible){
-                view.setVisibility(View.VISIBLE);
-                params.height = LinearLayout.LayoutParams.WRAP_CONTENT;
-                params.bottomMargin = marginBottom;
-            }
-            else{
-                view.setVisibility(View.GONE);
-                params.bottomMargin = 0;
-            }
-            view.setLayoutParams(params);
-            view.invalidate();
-        }
     }
 
     /**
@@ -149,9 +443,10 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.ViewHolder> {
         /**
          * Is called if the state of the list items checkbox changed.
          * @param task The {@link Task} associated with the list item.
+         * @param position The adapter position of the list item.
          * @param isChecked The new checked state of the checkbox.
          */
-        void onItemChecked(Task task, boolean isChecked);
+        void onItemChecked(Task task, int position, boolean isChecked);
 
         /**
          * Is called if the title of the list item is clicked.
@@ -1,37 +1,64 @@
 package de.leoliebig.simpLISTic.db;
 
-import android.content.ContentValues;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import de.leoliebig.simpLISTic.Global;
+import de.leoliebig.simpLISTic.Tracing;
+import de.leoliebig.simpLISTic.metrics.Counter;
+import de.leoliebig.simpLISTic.metrics.Metrics;
+import de.leoliebig.simpLISTic.metrics.Timer;
 import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskOrder;
 import rx.Observable;
 import rx.Observer;
 import rx.Subscriber;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action0;
 import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 
 /**
- * Implements the data access object for CRUD operations on the database and the SQLiteOpenHelper
+ * Implements the {@link TaskDao} for CRUD operations on the database and the SQLiteOpenHelper
  * for database maintenance.
  *
  * @author info@leoliebig.de
  */
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements TaskDao {
 
     private static final String TAG = DatabaseHelper.class.getSimpleName();
 
     private static DatabaseHelper instance = null;
 
+    /**
+     * Controls the lifetime of the database connection.
+     */
+    public enum ConnectionMode {
+        /** The connection is opened and closed for every single operation. */
+        PER_OPERATION,
+        /** One connection is kept open until memory is trimmed or the process ends. */
+        PERSISTENT
+    }
+
+    private ConnectionMode connectionMode = ConnectionMode.PERSISTENT;
+    private TaskBatchWriter batchWriter = null;
+    //all writes hold the lock of this instance, so the events are already serialized
+    private final PublishSubject<TaskChange> changes = PublishSubject.create();
+    private final TaskCache cache = new TaskCache(TaskCache.DEFAULT_MAX_SIZE);
+    private final TaskWriteQueue writeQueue;
+
     //specifies which columns will be read from the database
     private static final String[] PROJECTION = {
             Schema.TaskEntry._ID,
@@ -42,6 +69,60 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             Schema.TaskEntry.COLUMN_JSON_DETAIL,
     };
 
+    //columns read for every task of the list, see TaskCursorList
+    private static final String[] LIST_PROJECTION = {
+            Schema.TaskEntry._ID,
+            Schema.TaskEntry.COLUMN_TITLE,
+            Schema.TaskEntry.COLUMN_LIST_POS,
+            Schema.TaskEntry.COLUMN_DUE_DATE,
+            Schema.TaskEntry.COLUMN_DONE,
+    };
+
+    //the columns read for scheduling reminders, both are part of the due date index
+    private static final String[] REMINDER_PROJECTION = {
+            Schema.TaskEntry._ID,
+            Schema.TaskEntry.COLUMN_DUE_DATE,
+    };
+
+    //tasks with a pending reminder after the first argument, matches the partial due date index
+    private static final String SELECTION_PENDING_REMINDER =
+            Schema.TaskEntry.COLUMN_DONE + " = 0 AND " + Schema.TaskEntry.COLUMN_DUE_DATE + " > ?";
+
+    //the durations are measured while holding the lock, without waiting for it
+    private static final Timer TIMER_GET_ALL = Metrics.timer("db.getAll");
+    private static final Timer TIMER_LOAD_TASK = Metrics.timer("db.loadTask");
+    private static final Timer TIMER_GET_TASKS = Metrics.timer("db.getTasks");
+    private static final Timer TIMER_WRITE = Metrics.timer("db.write");
+    private static final Timer TIMER_DELETE = Metrics.timer("db.delete");
+    private static final Timer TIMER_REBALANCE = Metrics.timer("db.rebalance");
+    private static final Timer TIMER_SEARCH = Metrics.timer("db.search");
+    private static final Timer TIMER_DUE_TASKS = Metrics.timer("db.getDueTasks");
+    private static final Timer TIMER_NEXT_REMINDER = Metrics.timer("db.getNextReminder");
+    private static final Counter COUNTER_CACHE_HITS = Metrics.counter("db.cache.hits");
+    private static final Counter COUNTER_WRITTEN_TASKS = Metrics.counter("db.write.tasks");
+
+    //maximum number of results of an asynchronous search
+    private static final int SEARCH_LIMIT = 100;
+
+    //ranks title matches before tasks where only the notes match, the first argument only matches titles
+    private static final String SQL_SEARCH =
+            "SELECT t." + Schema.TaskEntry._ID +
+                    ",t." + Schema.TaskEntry.COLUMN_TITLE +
+                    ",t." + Schema.TaskEntry.COLUMN_LIST_POS +
+                    ",t." + Schema.TaskEntry.COLUMN_DUE_DATE +
+                    ",t." + Schema.TaskEntry.COLUMN_DONE +
+                    ",t." + Schema.TaskEntry.COLUMN_JSON_DETAIL +
+                    " FROM " + Schema.TaskEntry.TABLE_NAME + " t JOIN (" +
+                    "SELECT docid, MIN(tier) AS tier FROM (" +
+                    "SELECT docid, 0 AS tier FROM " + Schema.SearchEntry.TABLE_NAME +
+                    " WHERE " + Schema.SearchEntry.TABLE_NAME + " MATCH ?" +
+                    " UNION ALL " +
+                    "SELECT docid, 1 AS tier FROM " + Schema.SearchEntry.TABLE_NAME +
+                    " WHERE " + Schema.SearchEntry.TABLE_NAME + " MATCH ?" +
+                    ") GROUP BY docid) m ON t." + Schema.TaskEntry._ID + " = m.docid" +
+                    " ORDER BY m.tier, t." + Schema.TaskEntry.COLUMN_LIST_POS +
+                    " LIMIT ?";
+
     /**
      * Returns the {@link DatabaseHelper} instance.
      * @param context The application context
@@ -61,18 +142,108 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     private DatabaseHelper(final Context context){
         super(context, Schema.DATABASE_NAME, null, Schema.DATABASE_VERSION);
+        writeQueue = new TaskWriteQueue(this, TaskWriteQueue.DEFAULT_WINDOW);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        //older platforms can only enable write-ahead logging on an opened database
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN && !db.isReadOnly()){
+            db.enableWriteAheadLogging();
+        }
+        Log.d(TAG, "Database opened");
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(Schema.TagTable.SQL_CREATE_ENTRIES);
+        Migrations.upgrade(db, Migrations.BASE_VERSION, Schema.DATABASE_VERSION);
         Log.d(TAG, "Database created");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        //not implemented because changing parts of the data should be stored into the JSON
-        //data field
+        //changing parts of the data should be stored into the JSON data field,
+        //the migrations only add structures like indexes
+        Migrations.upgrade(db, oldVersion, newVersion);
+    }
+
+    /**
+     * Sets the lifecycle of the database connection. {@link ConnectionMode#PERSISTENT} is the default,
+     * {@link ConnectionMode#PER_OPERATION} closes the connection after every operation and is mainly
+     * useful for comparing the latency of both modes.
+     * @param mode The {@link ConnectionMode} to use for all following operations.
+     */
+    public synchronized void setConnectionMode(@NonNull final ConnectionMode mode){
+        this.connectionMode = mode;
+        if(mode == ConnectionMode.PER_OPERATION){
+            closeBatchWriter();
+            close();
+        }
+    }
+
+    /**
+     * Returns the current lifecycle of the database connection.
+     * @return The current {@link ConnectionMode}.
+     */
+    public synchronized ConnectionMode getConnectionMode(){
+        return connectionMode;
+    }
+
+    /**
+     * Returns an {@link Observable} that emits a {@link TaskChange} for every task written or deleted by
+     * this instance, after the change was committed. The events are emitted on the writing thread
+     * while holding the lock of this instance, so subscribers should observe them on another thread.
+     * @return The {@link Observable} of all following changes, it never completes.
+     */
+    public Observable<TaskChange> observeChanges(){
+        return changes.asObservable();
+    }
+
+    /**
+     * Returns the write-through cache used by {@link #getTask(long)}, mainly for reading its statistics.
+     * @return The {@link TaskCache} of this instance.
+     */
+    public TaskCache getCache(){
+        return cache;
+    }
+
+    /**
+     * Returns the queue for writing tasks without blocking the calling thread. Saves and deletes made
+     * by the GUI should use it instead of the synchronous methods of this class.
+     * @return The {@link TaskWriteQueue} of this instance.
+     */
+    public TaskWriteQueue getWriteQueue(){
+        return writeQueue;
+    }
+
+    /**
+     * Should be called by the application if the system asks to trim memory. Closes the persistent
+     * connection and releases its page cache if the process is about to become a candidate for
+     * being killed. The connection is reopened by the next operation. The {@link TaskCache} is cleared as well.
+     * @param level The trim level as passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public synchronized void onTrimMemory(final int level){
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE){
+            cache.clear();
+            Log.d(TAG, "Closing database, trim memory level: " + level);
+            closeBatchWriter();
+            close();
+        }
+    }
+
+    /**
+     * Releases the passed database after an operation. The connection is only closed
+     * if the {@link ConnectionMode#PER_OPERATION} mode is active.
+     * @param db The database used for the operation.
+     */
+    private void releaseDatabase(@NonNull final SQLiteDatabase db){
+        if(connectionMode == ConnectionMode.PER_OPERATION){
+            closeBatchWriter();
+            db.close();
+        }
     }
 
     /**
@@ -82,17 +253,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return The new row id of the entry or -1 if the insert or update failed.
      * @throws java.lang.IllegalArgumentException In case the passed argument is null.
      */
+    @Override
     public synchronized long save(@NonNull final Task task){
-        if(task.getId() != Task.TRANSIENT) {
-            return updateTask(task);
-        }
-
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues values = getContentValues(task);
-        long newRowId = db.insert(Schema.TaskEntry.TABLE_NAME, null, values);
-        db.close();
-
-        return newRowId;
+        TaskBatchWriter.Result result = writeAll(Collections.singletonList(task));
+        return result.getRowIds()[0];
     }
 
     /**
@@ -100,6 +264,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @param tasks The tasks to save and/or update.
      * @return <code>true</code> if all tasks were saved and <code>false</code> in case of errors.
      */
+    @Override
     public synchronized boolean saveAll(@NonNull final List<Task> tasks){
 
         if(tasks.isEmpty()) {
@@ -107,133 +272,178 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             return false;
         }
 
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues values;
-        int updateCount;
-        long id;
+        return writeAll(tasks).isSuccessful();
+    }
+
+    /**
+     * Saves or/and updates all the tasks of the passed {@link Task} list inside of a single transaction
+     * and returns the row id of every task. If one of the tasks can not be written the transaction is
+     * rolled back and none of the tasks is stored. Inserted tasks get their new id and every change is
+     * published by {@link #observeChanges()}. This operation is performed in an synchronous manner.
+     * @param tasks The tasks to save and/or update.
+     * @return The {@link TaskBatchWriter.Result} with the row ids in the order of the passed list.
+     */
+    public synchronized TaskBatchWriter.Result writeAll(@NonNull final List<Task> tasks){
+        return writeAll(tasks, false);
+    }
 
-        for(Task task : tasks){
-            values = getContentValues(task);
+    /**
+     * Updates the list positions of the passed tasks inside of a single transaction, the changes are
+     * published as {@link TaskChange.Type#MOVED}. This operation is performed in an synchronous manner.
+     * @param tasks The moved tasks.
+     * @return <code>true</code> if all tasks were saved and <code>false</code> in case of errors.
+     */
+    @Override
+    public synchronized boolean moveAll(@NonNull final List<Task> tasks){
+
+        if(tasks.isEmpty()) {
+            Log.w(TAG, "The passed tasks collection was empty");
+            return false;
+        }
+
+        return writeAll(tasks, true).isSuccessful();
+    }
+
+    /**
+     * Writes the passed tasks, sets the ids of inserted tasks and publishes the changes if the
+     * transaction was committed.
+     * @param tasks The tasks to save and/or update.
+     * @param moved <code>true</code> if only the list positions of existing tasks changed.
+     * @return The {@link TaskBatchWriter.Result} with the row ids in the order of the passed list.
+     */
+    synchronized TaskBatchWriter.Result writeAll(@NonNull final List<Task> tasks, final boolean moved){
+
+        Tracing.begin("db.write");
+        long start = TIMER_WRITE.start();
+        TaskBatchWriter.Result result;
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            result = getBatchWriter(db).write(tasks);
+            releaseDatabase(db);
+        } finally {
+            TIMER_WRITE.stop(start);
+            Tracing.end();
+        }
+        COUNTER_WRITTEN_TASKS.add(tasks.size());
+
+        if(Global.DEBUG) Log.d(TAG, "Wrote " + tasks.size() + " task(s), successful: " + result.isSuccessful());
+        if(!result.isSuccessful()) return result;
+
+        long[] rowIds = result.getRowIds();
+        for(int i = 0; i < rowIds.length; i++){
+            Task task = tasks.get(i);
+            TaskChange.Type type;
             if(task.getId() == Task.TRANSIENT){
-                //new task
-                id = db.insert(Schema.TaskEntry.TABLE_NAME, null, values);
-                if(id == -1) {
-                    db.close();
-                    return false;
-                }
+                task.setId(rowIds[i]);
+                type = TaskChange.Type.INSERTED;
             }
             else{
-                //update
-                String selection = Schema.TaskEntry._ID + " LIKE ?";
-                String[] selectionArgs = { String.valueOf(task.getId()) };
-                updateCount = db.update(Schema.TaskEntry.TABLE_NAME, values, selection, selectionArgs);
-                if(updateCount != 1) {
-                    db.close();
-                    return false;
-                }
+                type = moved ? TaskChange.Type.MOVED : TaskChange.Type.UPDATED;
             }
+            cache.put(task);
+            changes.onNext(new TaskChange(type, rowIds[i], task));
         }
-
-        db.close();
-        return true;
+        return result;
     }
 
     /**
-     * Converts the passed {@link Task} into {@link ContentValues} for writing
-     * them into the database.
-     * @param task The {@link Task} to convert.
-     * @return The {@link ContentValues} representing the task.
+     * Returns the {@link TaskBatchWriter} for the passed database. The writer and its compiled
+     * statements are reused as long as the connection stays open.
+     * @param db The open and writable database.
+     * @return A {@link TaskBatchWriter} bound to the passed database.
      */
-    private ContentValues getContentValues(@NonNull final Task task) {
-        String jsonData = Global.gson.toJson(task.getDetails());
-
-        ContentValues values = new ContentValues();
-        values.put(Schema.TaskEntry.COLUMN_TITLE, task.getTitle());
-        values.put(Schema.TaskEntry.COLUMN_LIST_POS, task.getListPosition());
-        if(task.getReminder() != null) values.put(Schema.TaskEntry.COLUMN_DUE_DATE, task.getReminder().getTime());
-        else values.put(Schema.TaskEntry.COLUMN_DUE_DATE, 0);
-        values.put(Schema.TaskEntry.COLUMN_DONE, task.isDone());
-        values.put(Schema.TaskEntry.COLUMN_JSON_DETAIL, jsonData);
-        return values;
+    private TaskBatchWriter getBatchWriter(@NonNull final SQLiteDatabase db){
+        if(batchWriter == null || !batchWriter.isBoundTo(db)){
+            closeBatchWriter();
+            batchWriter = new TaskBatchWriter(db);
+        }
+        return batchWriter;
     }
 
     /**
-     * Updates the passed {@link Task}.
-     * @param task The {@link Task} to update.
-     * @return the number of updated rows, should be 1
+     * Releases the compiled statements of the current {@link TaskBatchWriter}, if any.
      */
-    private long updateTask(@NonNull final Task task){
-
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues values = getContentValues(task);
-
-        //define 'where' part of query
-        String selection = Schema.TaskEntry._ID + " LIKE ?";
-        //specify arguments in placeholder order
-        String[] selectionArgs = { String.valueOf(task.getId()) };
-
-        int count = db.update(Schema.TaskEntry.TABLE_NAME, values, selection, selectionArgs);
-        db.close();
-
-        if(count == 1){
-            Log.d(TAG, "Updated " + count + " row(s)");
-            return task.getId();
-        }else{
-            Log.e(TAG, "Error updating task " + task.getTitle() + " (" + task.getId()+")");
-            return -1;
+    private void closeBatchWriter(){
+        if(batchWriter != null){
+            batchWriter.close();
+            batchWriter = null;
         }
-
     }
 
     /**
-     * Returns the {@link Task} associated to the passed id. This operation is performed in an synchronous manner.
+     * Returns the {@link Task} associated to the passed id. Tasks that were recently read or written are
+     * returned from the {@link TaskCache} without accessing the database and without waiting for
+     * running writes. Otherwise the operation is performed in an synchronous manner.
      * @param id The id of the {@link Task}, must be larger as 0.
-     * @return The {@link Task} associated to the passed id or <code>null</code> if not found.
+     * @return A new {@link Task} object associated to the passed id or <code>null</code> if not found.
      */
-    public synchronized Task getTask(final long id){
+    @Override
+    public Task getTask(final long id){
         if(id < 1) throw new IllegalArgumentException("The passed id must be larger as 0.");
 
-        SQLiteDatabase db = getReadableDatabase();
-
-        //define the 'where' part of query
-        String selection = Schema.TaskEntry._ID + " LIKE ?";
-        //specify arguments in placeholder order
-        String[] selectionArgs = { String.valueOf(id) };
-
-        Cursor cursor = db.query(
-                Schema.TaskEntry.TABLE_NAME,               //the table to query
-                PROJECTION,                               //the columns to return
-                selection,                                //the columns for the WHERE clause
-                selectionArgs,                            //the values for the WHERE clause
-                null,                                     //do not group the rows
-                null,                                     //do not filter by row groups
-                null                                      //do not sort
-        );
+        Task task = cache.get(id);
+        if(task != null){
+            COUNTER_CACHE_HITS.inc();
+            return task;
+        }
+        return loadTask(id);
+    }
 
-        if( cursor!=null && cursor.moveToFirst() ){
+    /**
+     * Reads the {@link Task} associated to the passed id from the database and adds it to the cache.
+     * @param id The id of the {@link Task}.
+     * @return The {@link Task} associated to the passed id or <code>null</code> if not found.
+     */
+    private synchronized Task loadTask(final long id){
+
+        Tracing.begin("db.loadTask");
+        long start = TIMER_LOAD_TASK.start();
+        Task task = null;
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+
+            //define the 'where' part of query
+            String selection = Schema.TaskEntry._ID + " = ?";
+            //specify arguments in placeholder order
+            String[] selectionArgs = { String.valueOf(id) };
+
+            Cursor cursor = db.query(
+                    Schema.TaskEntry.TABLE_NAME,               //the table to query
+                    PROJECTION,                               //the columns to return
+                    selection,                                //the columns for the WHERE clause
+                    selectionArgs,                            //the values for the WHERE clause
+                    null,                                     //do not group the rows
+                    null,                                     //do not filter by row groups
+                    null                                      //do not sort
+            );
 
-            String title = cursor.getString(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_TITLE));
-            int listPos = cursor.getInt(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_LIST_POS));
-            long dueDateMillis= cursor.getLong(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DUE_DATE));
-            int doneInt = cursor.getInt(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DONE));
-            String detailsJson = cursor.getString(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_JSON_DETAIL));
+            if( cursor!=null && cursor.moveToFirst() ){
 
-            cursor.close();
-            db.close();
+                String title = cursor.getString(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_TITLE));
+                long listPos = cursor.getLong(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_LIST_POS));
+                long dueDateMillis= cursor.getLong(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DUE_DATE));
+                int doneInt = cursor.getInt(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DONE));
+                String detailsJson = cursor.getString(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_JSON_DETAIL));
 
-            return new Task(
-                    id,
-                    title,
-                    listPos,
-                    dueDateMillis,
-                    doneInt,
-                    detailsJson
-            );
-        }
-        else{
-            db.close();
-            return null; //invalid id
+                task = new Task(
+                        id,
+                        title,
+                        listPos,
+                        dueDateMillis,
+                        doneInt,
+                        detailsJson
+                );
+            }
+            if(cursor != null) cursor.close();
+            releaseDatabase(db);
+        } finally {
+            TIMER_LOAD_TASK.stop(start);
+            Tracing.end();
         }
+
+        if(task == null) return null; //invalid id
+        cache.put(task);
+        return task;
     }
 
     /**
@@ -241,6 +451,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @param id The id of the {@link Task}, must be larger as 0.
      * @return The number of deleted rows, should be 1.
      */
+    @Override
     public synchronized int deleteTask(final long id){
 
         if(id == Task.TRANSIENT){
@@ -248,88 +459,332 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             return 0;
         }
 
-        SQLiteDatabase db = getWritableDatabase();
+        return deleteTasks(new long[]{ id })[0];
+    }
+
+    /**
+     * Deletes the tasks with the passed ids inside of a single transaction and publishes a
+     * {@link TaskChange.Type#DELETED} change for every deleted task.
+     * @param ids The ids of the tasks to delete.
+     * @return The number of deleted rows for every passed id, in the order of the passed ids.
+     */
+    synchronized int[] deleteTasks(@NonNull final long[] ids){
+
+        Tracing.begin("db.delete");
+        long start = TIMER_DELETE.start();
+        int[] counts = new int[ids.length];
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+
+            //define 'where' part of query
+            String selection = Schema.TaskEntry._ID + " = ?";
+            String searchSelection = Schema.SearchEntry.COLUMN_DOC_ID + " = ?";
+
+            db.beginTransaction();
+            try {
+                for(int i = 0; i < ids.length; i++){
+                    //specify arguments in placeholder order
+                    String[] selectionArgs = { String.valueOf(ids[i]) };
+                    counts[i] = db.delete(Schema.TaskEntry.TABLE_NAME, selection, selectionArgs);
+                    db.delete(Schema.SearchEntry.TABLE_NAME, searchSelection, selectionArgs);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            releaseDatabase(db);
+        } finally {
+            TIMER_DELETE.stop(start);
+            Tracing.end();
+        }
+
+        for(int i = 0; i < ids.length; i++){
+            cache.remove(ids[i]);
+            if(counts[i] > 0) changes.onNext(new TaskChange(TaskChange.Type.DELETED, ids[i], null));
+        }
+        if(Global.DEBUG) Log.d(TAG, "Deleted " + ids.length + " task(s)");
+        return counts;
+    }
+
+    /**
+     * Spreads the list positions of the passed tasks evenly by {@link TaskOrder#GAP} inside of a single
+     * transaction, like {@link TaskOrder#rebalance(List)} does for a list in memory. Only the list position
+     * column is updated and a single {@link TaskChange.Type#REBALANCED} change is published.
+     * @param ids The ids of all tasks in list order, the task at index i gets the position i * GAP.
+     *            Transient tasks are skipped.
+     */
+    synchronized void rebalance(@NonNull final long[] ids){
+
+        Tracing.begin("db.rebalance");
+        long start = TIMER_REBALANCE.start();
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            SQLiteStatement statement = db.compileStatement(Schema.TaskStatements.SQL_UPDATE_LIST_POS);
+            db.beginTransaction();
+            try {
+                for(int i = 0; i < ids.length; i++){
+                    if(ids[i] == Task.TRANSIENT) continue;
+                    statement.bindLong(1, i * TaskOrder.GAP);
+                    statement.bindLong(2, ids[i]);
+                    statement.executeUpdateDelete();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                statement.close();
+            }
+            releaseDatabase(db);
+        } finally {
+            TIMER_REBALANCE.stop(start);
+            Tracing.end();
+        }
+
+        //the positions of nearly all cached tasks changed
+        cache.clear();
+        if(Global.DEBUG) Log.d(TAG, "Rebalanced " + ids.length + " task(s)");
+        changes.onNext(new TaskChange(TaskChange.Type.REBALANCED, Task.TRANSIENT, null));
+    }
+
+    /**
+     * Fetches all tasks from the database in an synchronous manner. Only the columns shown in the list are
+     * read for every task, the tasks themselves are loaded by their ids when they are read from the returned
+     * list, see {@link #getTasks(long[])}. The first page of tasks is loaded right away. The duration still
+     * grows linearly with the number of tasks, see {@link TaskCursorList#read(DatabaseHelper, Cursor)}.
+     * @return A {@link TaskCursorList} of all tasks sorted by their list position or an empty list if the table is empty.
+     */
+    @Override
+    public synchronized TaskCursorList getAll(){
+
+        Tracing.begin("db.getAll");
+        long start = TIMER_GET_ALL.start();
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+
+            //sort by list pos
+            String orderBy =  Schema.TaskEntry.COLUMN_LIST_POS + " ASC";
+
+            Cursor cursor = db.query(
+                    Schema.TaskEntry.TABLE_NAME,
+                    LIST_PROJECTION,
+                    null,
+                    null,
+                    null,
+                    null,
+                    orderBy
+            );
+
+            TaskCursorList tasks;
+            try {
+                tasks = TaskCursorList.read(this, cursor);
+            } finally {
+                cursor.close();
+            }
+            releaseDatabase(db);
+            //the first screen is shown right after loading
+            if(!tasks.isEmpty()) tasks.get(0);
+            return tasks;
+        } finally {
+            TIMER_GET_ALL.stop(start);
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Loads the tasks with the passed ids in a single query and adds them to the {@link TaskCache}.
+     * This operation is performed in an synchronous manner.
+     * @param ids The ids of the tasks to load.
+     * @return A list with the found tasks in any order, deleted tasks are missing.
+     */
+    synchronized List<Task> getTasks(@NonNull final long[] ids){
+
+        if(ids.length == 0) return new ArrayList<>();
 
-        //define 'where' part of query
-        String selection = Schema.TaskEntry._ID + " LIKE ?";
-        //specify arguments in placeholder order
-        String[] selectionArgs = { String.valueOf(id) };
+        Tracing.begin("db.getTasks");
+        long start = TIMER_GET_TASKS.start();
+        try {
+            SQLiteDatabase db = getReadableDatabase();
 
-        int count = db.delete(Schema.TaskEntry.TABLE_NAME, selection, selectionArgs);
-        db.close();
-        Log.d(TAG, "Deleted " + count + " row(s)");
-        return count;
+            //WHERE _id IN (?, ?, ...)
+            StringBuilder selection = new StringBuilder(Schema.TaskEntry._ID).append(" IN (");
+            String[] selectionArgs = new String[ids.length];
+            for(int i = 0; i < ids.length; i++){
+                selection.append(i == 0 ? "?" : ",?");
+                selectionArgs[i] = String.valueOf(ids[i]);
+            }
+            selection.append(')');
+
+            Cursor cursor = db.query(
+                    Schema.TaskEntry.TABLE_NAME,
+                    PROJECTION,
+                    selection.toString(),
+                    selectionArgs,
+                    null,
+                    null,
+                    null
+            );
+
+            List<Task> tasks;
+            try {
+                tasks = readTasks(cursor);
+            } finally {
+                cursor.close();
+            }
+            releaseDatabase(db);
+
+            //read while holding the lock of this instance, so the tasks are never stale
+            for(int i = 0; i < tasks.size(); i++) cache.put(tasks.get(i));
+            return tasks;
+        } finally {
+            TIMER_GET_TASKS.stop(start);
+            Tracing.end();
+        }
     }
 
     /**
-     * Fetches all tasks from the database in an synchronous manner.
-     * @return A list of all found {@Task} objects or an empty List if the table is empty.
+     * Searches the titles and notes of all tasks for words starting with the words of the passed query.
+     * Tasks with matching titles are returned first, followed by tasks where only the notes match.
+     * Both groups are sorted by their list position. This operation is performed in an synchronous manner.
+     * @param query The text entered by the user.
+     * @param limit The maximum number of returned tasks.
+     * @return A list with the matching tasks or an empty list if nothing matches.
      */
-    public synchronized List<Task> getAll(){
+    public synchronized List<Task> search(@NonNull final String query, final int limit){
 
-        List<Task> tasks = new LinkedList<>();
+        String titleMatch = SearchIndex.toMatchQuery(query, Schema.SearchEntry.COLUMN_TITLE);
+        String anyMatch = SearchIndex.toMatchQuery(query, null);
+        if(anyMatch == null) return new ArrayList<>();
 
+        Tracing.begin("db.search");
+        long start = TIMER_SEARCH.start();
         SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.rawQuery(SQL_SEARCH, new String[]{ titleMatch, anyMatch, String.valueOf(limit) });
 
-        //sort by list pos
-        String orderBy =  Schema.TaskEntry.COLUMN_LIST_POS + " ASC";
+        List<Task> tasks;
+        try {
+            tasks = readTasks(cursor);
+        } finally {
+            cursor.close();
+            releaseDatabase(db);
+            TIMER_SEARCH.stop(start);
+            Tracing.end();
+        }
 
-        //SELECT * FROM tags
+        if(Global.DEBUG) Log.d(TAG, "Found " + tasks.size() + " task(s) for '" + query + "'");
+        return tasks;
+    }
+
+    /**
+     * Returns the tasks that are not done and have a reminder inside of the passed time range, sorted by
+     * their reminder dates. The query is served by the {@link Schema.TaskIndex#PENDING_DUE_DATE} index.
+     * This operation is performed in an synchronous manner.
+     * @param after The exclusive start of the range in milliseconds.
+     * @param until The inclusive end of the range in milliseconds.
+     * @return A list with the due tasks or an empty list if no reminder is due.
+     */
+    public synchronized List<Task> getDueTasks(final long after, final long until){
+
+        Tracing.begin("db.getDueTasks");
+        long start = TIMER_DUE_TASKS.start();
+        SQLiteDatabase db = getReadableDatabase();
         Cursor cursor = db.query(
                 Schema.TaskEntry.TABLE_NAME,
                 PROJECTION,
+                SELECTION_PENDING_REMINDER + " AND " + Schema.TaskEntry.COLUMN_DUE_DATE + " <= ?",
+                new String[]{ String.valueOf(after), String.valueOf(until) },
                 null,
                 null,
-                null,
-                null,
-                orderBy
+                Schema.TaskEntry.COLUMN_DUE_DATE
         );
 
+        try {
+            return readTasks(cursor);
+        } finally {
+            cursor.close();
+            releaseDatabase(db);
+            TIMER_DUE_TASKS.stop(start);
+            Tracing.end();
+        }
+    }
 
-        if( cursor!=null && cursor.moveToFirst() ){
-
-            long id;
-            String title;
-            int listPos;
-            long dueDateMillis;
-            int doneInt;
-            String detailsJson;
+    /**
+     * Returns the earliest reminder after the passed time of all tasks that are not done. Only the id and
+     * the due date are read, so the query is answered from the {@link Schema.TaskIndex#PENDING_DUE_DATE}
+     * index with a single lookup, regardless of the number of tasks. This operation is performed in an
+     * synchronous manner.
+     * @param after The time in milliseconds the reminder must be later than.
+     * @return The next {@link Reminder} or <code>null</code> if there is none.
+     */
+    public synchronized Reminder getNextReminder(final long after){
 
-            while (!cursor.isAfterLast()) {
+        Tracing.begin("db.getNextReminder");
+        long start = TIMER_NEXT_REMINDER.start();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(
+                Schema.TaskEntry.TABLE_NAME,
+                REMINDER_PROJECTION,
+                SELECTION_PENDING_REMINDER,
+                new String[]{ String.valueOf(after) },
+                null,
+                null,
+                Schema.TaskEntry.COLUMN_DUE_DATE,
+                "1"
+        );
 
-                id = cursor.getLong(cursor.getColumnIndexOrThrow(Schema.TaskEntry._ID));
-                title = cursor.getString(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_TITLE));
-                listPos = cursor.getInt(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_LIST_POS));
-                dueDateMillis = cursor.getLong(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DUE_DATE));
-                doneInt = cursor.getInt(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DONE));
-                detailsJson = cursor.getString(cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_JSON_DETAIL));
+        try {
+            return cursor.moveToFirst() ? new Reminder(cursor.getLong(0), cursor.getLong(1)) : null;
+        } finally {
+            cursor.close();
+            releaseDatabase(db);
+            TIMER_NEXT_REMINDER.stop(start);
+            Tracing.end();
+        }
+    }
 
+    /**
+     * Reads all rows of the passed cursor, its columns must be in the order of {@link #PROJECTION}.
+     * @param cursor The cursor to read, it is not closed.
+     * @return A list with one {@link Task} per row.
+     */
+    private static List<Task> readTasks(@NonNull final Cursor cursor){
+        Tracing.begin("db.readTasks");
+        try {
+            List<Task> tasks = new ArrayList<>(cursor.getCount());
+            while(cursor.moveToNext()){
                 tasks.add(new Task(
-                        id,
-                        title,
-                        listPos,
-                        dueDateMillis,
-                        doneInt,
-                        detailsJson
+                        cursor.getLong(0),
+                        cursor.getString(1),
+                        cursor.getLong(2),
+                        cursor.getLong(3),
+                        cursor.getInt(4),
+                        cursor.getString(5)
                 ));
-                cursor.moveToNext();
             }
-
-            cursor.close();
+            return tasks;
+        } finally {
+            Tracing.end();
         }
-        db.close();
-        return tasks;
     }
 
     /**
      * Deletes all tasks from the database by dropping the tags table and recreating it.
-     * This operation is performed in an synchronous manner.
+     * This operation is performed in an synchronous manner, the GUI uses {@link TaskWriteQueue#deleteAll}.
      */
-    public synchronized void deleteAll(){
+    synchronized void deleteAll(){
+        closeBatchWriter();
         SQLiteDatabase db = getWritableDatabase();
-        db.execSQL(Schema.TagTable.SQL_DELETE_ENTRIES);
-        db.execSQL(Schema.TagTable.SQL_CREATE_ENTRIES);
-        db.close();
+        db.beginTransaction();
+        try {
+            db.execSQL(Schema.TagTable.SQL_DELETE_ENTRIES);
+            db.execSQL(Schema.TagTable.SQL_CREATE_ENTRIES);
+            //dropping the table also dropped its indexes
+            Migrations.upgrade(db, Migrations.BASE_VERSION, Schema.DATABASE_VERSION);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        releaseDatabase(db);
+        cache.clear();
+        changes.onNext(new TaskChange(TaskChange.Type.CLEARED, Task.TRANSIENT, null));
     }
 
     /**
@@ -338,12 +793,64 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @param fetchTasksObserver An {@link Observer} object that implements the callbacks for getting
      *                           the result of the async operation.
      */
-    public Subscription getAllAsync(@NonNull final Observer<List<Task>> fetchTasksObserver) {
+    public Subscription getAllAsync(@NonNull final Observer<TaskCursorList> fetchTasksObserver) {
 
-        return getFetchTasksObservable()
+        Observable<TaskCursorList> observable = getFetchTasksObservable()
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread());
+        return traceAsync(observable, "db.getAllAsync").subscribe(fetchTasksObserver);
+    }
+
+    /**
+     * Searches the tasks in an asynchronous manner with RxAndroid and returns the created
+     * {@link Subscription} object, see {@link #search(String, int)}.
+     * @param searchObserver An {@link Observer} object that implements the callbacks for getting
+     *                       the result of the async operation.
+     * @param query The text entered by the user.
+     */
+    public Subscription searchAsync(@NonNull final Observer<List<Task>> searchObserver, @NonNull final String query) {
+
+        return Observable.create(new Observable.OnSubscribe<List<Task>>() {
+                    @Override
+                    public void call(Subscriber<? super List<Task>> subscriber) {
+                        try {
+                            List<Task> result = search(query, SEARCH_LIMIT);
+                            subscriber.onNext(result);
+                            subscriber.onCompleted();
+                        } catch (Exception e) {
+                            subscriber.onError(e);
+                        }
+                    }
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(searchObserver);
+    }
+
+    /**
+     * Loads the tasks with the passed ids in an asynchronous manner with RxAndroid and returns the created
+     * {@link Subscription} object, see {@link #getTasks(long[])}.
+     * @param tasksObserver An {@link Observer} object that implements the callbacks for getting
+     *                      the result of the async operation.
+     * @param ids The ids of the tasks to load.
+     */
+    Subscription getTasksAsync(@NonNull final Observer<List<Task>> tasksObserver, @NonNull final long[] ids) {
+
+        return Observable.create(new Observable.OnSubscribe<List<Task>>() {
+                    @Override
+                    public void call(Subscriber<? super List<Task>> subscriber) {
+                        try {
+                            List<Task> result = getTasks(ids);
+                            subscriber.onNext(result);
+                            subscriber.onCompleted();
+                        } catch (Exception e) {
+                            subscriber.onError(e);
+                        }
+                    }
+                })
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(fetchTasksObserver);
+                .subscribe(tasksObserver);
     }
 
     /**
@@ -355,23 +862,74 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public Subscription saveAllAsync(@NonNull final Observer<Boolean> updateTasksObserver, @NonNull final List<Task> tasksToUpdate) {
 
-        return getUpdateTasksObservable(tasksToUpdate)
-                .subscribeOn(Schedulers.io())
+        Observable<Boolean> observable = getUpdateTasksObservable(tasksToUpdate)
+                .subscribeOn(writeQueue.getScheduler())
+                .observeOn(AndroidSchedulers.mainThread());
+        return traceAsync(observable, "db.saveAllAsync").subscribe(updateTasksObserver);
+    }
+
+    /**
+     * Updates the list positions of the passed tasks in an asynchronous manner with RxAndroid and returns
+     * the created {@link Subscription} object, see {@link #moveAll(List)}.
+     * @param updateTasksObserver An {@link Observer} object that implements the callbacks for getting
+     *                           the result of the async operation.
+     * @param movedTasks A list of {@link Task} objects with changed list positions.
+     */
+    public Subscription moveAllAsync(@NonNull final Observer<Boolean> updateTasksObserver, @NonNull final List<Task> movedTasks) {
+
+        return Observable.create(new Observable.OnSubscribe<Boolean>() {
+                    @Override
+                    public void call(Subscriber<? super Boolean> subscriber) {
+                        try {
+                            Boolean result = moveAll(movedTasks);
+                            subscriber.onNext(result);
+                            subscriber.onCompleted();
+                        }
+                        catch (Exception e){
+                            subscriber.onError(e);
+                        }
+                    }
+                })
+                .subscribeOn(writeQueue.getScheduler())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(updateTasksObserver);
     }
 
+    /**
+     * Traces the passed {@link Observable} from its subscription until its result was delivered or the
+     * subscription was cancelled, see {@link Tracing#beginAsync(String)}. Must be called right before
+     * subscribing.
+     * @param observable The {@link Observable} that is subscribed once.
+     * @param name The name of the async trace section.
+     * @return The traced {@link Observable}.
+     */
+    private static <T> Observable<T> traceAsync(@NonNull final Observable<T> observable, @NonNull final String name){
+        if(!Tracing.ENABLED) return observable;
+        final int cookie = Tracing.beginAsync(name);
+        //the subscriber unsubscribes after it received the result
+        return observable.doOnUnsubscribe(new Action0() {
+            @Override
+            public void call() {
+                Tracing.endAsync(name, cookie);
+            }
+        });
+    }
+
     /**
      * Creates a new {@link Observable} that fetches all tasks from the database
-     * and returns them as a list of {@link Task} objects.
+     * and returns them as a lazily loaded {@link TaskCursorList}.
      * @return The {@link Observable} to subscribe on for fetching all tasks from the database.
      */
-    private Observable<List<Task>> getFetchTasksObservable(){
-        return Observable.create(new Observable.OnSubscribe<List<Task>>() {
+    private Observable<TaskCursorList> getFetchTasksObservable(){
+        return Observable.create(new Observable.OnSubscribe<TaskCursorList>() {
             @Override
-            public void call(Subscriber<? super List<Task>> subscriber) {
+            public void call(Subscriber<? super TaskCursorList> subscriber) {
                 try {
-                    List<Task> tasks = getAll();
+                    TaskCursorList tasks = getAll();
+                    if(subscriber.isUnsubscribed()){
+                        tasks.close();
+                        return;
+                    }
                     subscriber.onNext(tasks);
                     subscriber.onCompleted();
                 } catch (Exception e) {
@@ -0,0 +1,166 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v4.util.AtomicFile;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+
+import de.leoliebig.simpLISTic.Global;
+import de.leoliebig.simpLISTic.model.FirstScreenSnapshot;
+import de.leoliebig.simpLISTic.model.Task;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Stores the {@link FirstScreenSnapshot} of the task list in a small file next to the database. The
+ * snapshot is read synchronously at the start of the process, which takes a single read of a few
+ * kilobytes instead of opening the database and reading every row.
+ *
+ * <p>Snapshots are written atomically on a background thread and only if the first screen changed
+ * since the last read or write.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public class FirstScreenStore {
+
+    private static final String TAG = FirstScreenStore.class.getSimpleName();
+
+    private static final String FILE_NAME = "first_screen.snapshot";
+
+    private final AtomicFile file;
+    //loads the tasks of the first screen that were not loaded by the list yet
+    private final DatabaseHelper dbHelper;
+    //writes the snapshots in the order they were saved
+    private final Scheduler.Worker worker = Schedulers.io().createWorker();
+    //the content of the file, guarded by this instance
+    private byte[] stored = null;
+
+    /**
+     * Creates a new instance for the snapshot file of the app.
+     * @param context The application context.
+     */
+    public FirstScreenStore(@NonNull final Context context) {
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+        this.dbHelper = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Reads the stored snapshot. This operation is performed in an synchronous manner.
+     * @return The tasks of the first screen or an empty list if there is no valid snapshot.
+     */
+    public List<Task> read() {
+        try {
+            byte[] snapshot = file.readFully();
+            List<Task> tasks = FirstScreenSnapshot.decode(new ByteArrayInputStream(snapshot));
+            synchronized (this) {
+                stored = snapshot;
+            }
+            if(Global.DEBUG) Log.d(TAG, "Read " + tasks.size() + " task(s) of the first screen");
+            return tasks;
+        } catch (FileNotFoundException e) {
+            //first start, nothing was stored yet
+            return Collections.emptyList();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read the snapshot: " + e.getLocalizedMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Stores the first tasks of the passed list in the background, if they differ from the stored ones.
+     * The calling thread only copies the first tasks that are in memory, the tasks of a
+     * {@link TaskCursorList} that were not loaded yet are loaded and encoded in the background.
+     * @param tasks The tasks sorted by their list position.
+     * @param excludeDone <code>true</code> if done tasks are hidden.
+     */
+    public void save(@NonNull final List<Task> tasks, final boolean excludeDone) {
+
+        final List<Task> first;
+        final long[] missingIds;
+        if(tasks instanceof TaskCursorList){
+            long[] ids = new long[FirstScreenSnapshot.DEFAULT_SIZE];
+            Task[] loaded = new Task[ids.length];
+            int count = ((TaskCursorList) tasks).copyFirst(ids, loaded, excludeDone);
+
+            first = new ArrayList<>(Arrays.asList(loaded).subList(0, count));
+            int missing = 0;
+            for(int i = 0; i < count; i++) if(loaded[i] == null) ids[missing++] = ids[i];
+            missingIds = Arrays.copyOf(ids, missing);
+        }
+        else{
+            //search results and previews are small lists in memory
+            first = new ArrayList<>(FirstScreenSnapshot.DEFAULT_SIZE);
+            for(int i = 0; i < tasks.size() && first.size() < FirstScreenSnapshot.DEFAULT_SIZE; i++){
+                Task task = tasks.get(i);
+                if(!excludeDone || !task.isDone()) first.add(new Task(task));
+            }
+            missingIds = new long[0];
+        }
+
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                if(missingIds.length > 0) fill(first, missingIds);
+                byte[] snapshot = FirstScreenSnapshot.encode(first, FirstScreenSnapshot.DEFAULT_SIZE, false);
+                synchronized (FirstScreenStore.this) {
+                    if(Arrays.equals(snapshot, stored)) return;
+                    stored = snapshot;
+                }
+                write(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Replaces the missing tasks of the passed list by the loaded ones, is called on the worker.
+     * @param first The first tasks in list order, missing tasks are <code>null</code> in the order of the ids.
+     * @param missingIds The ids of the missing tasks.
+     */
+    private void fill(@NonNull final List<Task> first, @NonNull final long[] missingIds) {
+
+        LongSparseArray<Task> loaded = new LongSparseArray<>(missingIds.length);
+        for(Task task : dbHelper.getTasks(missingIds)) loaded.put(task.getId(), task);
+
+        int missing = 0;
+        ListIterator<Task> positions = first.listIterator();
+        while(positions.hasNext()){
+            if(positions.next() != null) continue;
+            Task task = loaded.get(missingIds[missing++]);
+            //deleted in the meantime, the following change stores the first screen again
+            if(task != null) positions.set(task);
+            else positions.remove();
+        }
+    }
+
+    private void write(@NonNull final byte[] snapshot) {
+
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(snapshot);
+            file.finishWrite(out);
+            if(Global.DEBUG) Log.d(TAG, "Wrote snapshot of " + snapshot.length + " bytes");
+        } catch (IOException e) {
+            if(out != null) file.failWrite(out);
+            Log.w(TAG, "Could not write the snapshot: " + e.getLocalizedMessage());
+            synchronized (this) {
+                //written again on the next save
+                if(stored == snapshot) stored = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Upgrades the database schema step by step to {@link Schema#DATABASE_VERSION}. Every step only
+ * changes the schema in place and never copies the tasks table, so it can also be run on large
+ * databases.
+ *
+ * @author info@leoliebig.de
+ */
+final class Migrations {
+
+    private static final String TAG = Migrations.class.getSimpleName();
+
+    /** The version created by {@link Schema.TagTable#SQL_CREATE_ENTRIES}. */
+    static final int BASE_VERSION = 1;
+
+    private Migrations() {
+        //static helper
+    }
+
+    /**
+     * Applies all steps after the passed old version up to and including the new version. Must be
+     * called inside of a transaction, like {@link android.database.sqlite.SQLiteOpenHelper#onUpgrade}.
+     * @param db The database to upgrade.
+     * @param oldVersion The current version of the database.
+     * @param newVersion The version to upgrade to.
+     */
+    static void upgrade(@NonNull final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Log.d(TAG, "Migrating database to version " + version);
+            migrateTo(db, version);
+        }
+    }
+
+    /**
+     * Applies the single step that upgrades the database to the passed version.
+     * @param db The database to upgrade.
+     * @param version The version to upgrade to.
+     */
+    private static void migrateTo(@NonNull final SQLiteDatabase db, final int version) {
+        switch (version) {
+            case 2:
+                db.execSQL(Schema.TaskIndex.SQL_CREATE_LIST_POS);
+                db.execSQL(Schema.TaskIndex.SQL_CREATE_DONE_LIST_POS);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    db.execSQL(Schema.TaskIndex.SQL_CREATE_PENDING_DUE_DATE);
+                } else {
+                    db.execSQL(Schema.TaskIndex.SQL_CREATE_PENDING_DUE_DATE_COMPAT);
+                }
+                break;
+            case 3:
+                SearchIndex.rebuild(db);
+                break;
+            default:
+                throw new IllegalStateException("No migration to database version " + version);
+        }
+    }
+
+}
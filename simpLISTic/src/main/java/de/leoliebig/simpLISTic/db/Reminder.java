@@ -0,0 +1,36 @@
+package de.leoliebig.simpLISTic.db;
+
+/**
+ * The pending reminder of a single task, read without the other columns of the task.
+ *
+ * @author info@leoliebig.de
+ */
+public class Reminder {
+
+    private final long taskId;
+    private final long dueDate;
+
+    Reminder(final long taskId, final long dueDate) {
+        this.taskId = taskId;
+        this.dueDate = dueDate;
+    }
+
+    /**
+     * Returns the id of the task.
+     */
+    public long getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Returns the reminder date in milliseconds.
+     */
+    public long getDueDate() {
+        return dueDate;
+    }
+
+    @Override
+    public String toString() {
+        return "Reminder{taskId=" + taskId + ", dueDate=" + dueDate + '}';
+    }
+}
@@ -0,0 +1,148 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import de.leoliebig.simpLISTic.model.DetailAdapter;
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Keeps the full-text search table in sync with the tasks table. The titles and the notes of the
+ * {@link Task.Detail} objects are indexed with the id of the task as docid. The notes are stored inside
+ * of the JSON details, so the index can not be maintained by triggers and is written together with
+ * the tasks by the {@link TaskBatchWriter}.
+ *
+ * <p>Instances are bound to the connection they were created for and are not thread safe.</p>
+ *
+ * @author info@leoliebig.de
+ */
+final class SearchIndex {
+
+    private static final String TAG = SearchIndex.class.getSimpleName();
+
+    private final SQLiteStatement insertStatement;
+    private final SQLiteStatement updateTitleStatement;
+    private final SQLiteStatement deleteStatement;
+
+    /**
+     * Creates a new instance and compiles the statements for the passed database.
+     * @param db An open and writable database.
+     */
+    SearchIndex(@NonNull final SQLiteDatabase db) {
+        insertStatement = db.compileStatement(Schema.SearchStatements.SQL_INSERT);
+        updateTitleStatement = db.compileStatement(Schema.SearchStatements.SQL_UPDATE_TITLE);
+        deleteStatement = db.compileStatement(Schema.SearchStatements.SQL_DELETE);
+    }
+
+    /**
+     * Creates or recreates the search table and indexes all existing tasks. Must be called inside of
+     * a transaction.
+     * @param db The database to create the search table in.
+     */
+    static void rebuild(@NonNull final SQLiteDatabase db) {
+
+        db.execSQL(Schema.SearchTable.SQL_DELETE_ENTRIES);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            db.execSQL(Schema.SearchTable.SQL_CREATE_ENTRIES);
+        } else {
+            db.execSQL(Schema.SearchTable.SQL_CREATE_ENTRIES_COMPAT);
+        }
+
+        String[] projection = {
+                Schema.TaskEntry._ID,
+                Schema.TaskEntry.COLUMN_TITLE,
+                Schema.TaskEntry.COLUMN_JSON_DETAIL
+        };
+        Cursor cursor = db.query(Schema.TaskEntry.TABLE_NAME, projection, null, null, null, null, null);
+        SQLiteStatement insert = db.compileStatement(Schema.SearchStatements.SQL_INSERT);
+        try {
+            while (cursor.moveToNext()) {
+                insert.bindLong(1, cursor.getLong(0));
+                bindText(insert, 2, cursor.getString(1));
+                bindText(insert, 3, getNotes(cursor.getString(2)));
+                insert.executeInsert();
+            }
+            Log.d(TAG, "Indexed " + cursor.getCount() + " task(s)");
+        } finally {
+            insert.close();
+            cursor.close();
+        }
+    }
+
+    /**
+     * Builds a prefix query for the MATCH operator from the passed user input. Every word of the
+     * input must be the prefix of a word of the indexed text.
+     * @param input The text entered by the user.
+     * @param column The column to restrict the query to or <code>null</code> for all columns.
+     * @return The query or <code>null</code> if the input does not contain any words.
+     */
+    static String toMatchQuery(@NonNull final String input, final String column) {
+
+        StringBuilder query = new StringBuilder();
+        for (String word : input.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (query.length() > 0) query.append(' ');
+            if (column != null) query.append(column).append(':');
+            query.append(word).append('*');
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    /**
+     * Adds or replaces the entry for the passed task.
+     * @param id The id of the task.
+     * @param task The {@link Task} to index.
+     */
+    void put(final long id, @NonNull final Task task) {
+        delete(id);
+        insertStatement.bindLong(1, id);
+        bindText(insertStatement, 2, task.getTitle());
+        bindText(insertStatement, 3, task.getDetails().getNotes());
+        insertStatement.executeInsert();
+    }
+
+    /**
+     * Updates the title of an existing entry, the notes are not changed.
+     * @param id The id of the task.
+     * @param title The new title of the task.
+     */
+    void updateTitle(final long id, final String title) {
+        bindText(updateTitleStatement, 1, title);
+        updateTitleStatement.bindLong(2, id);
+        updateTitleStatement.executeUpdateDelete();
+    }
+
+    /**
+     * Removes the entry of the passed task.
+     * @param id The id of the task.
+     */
+    void delete(final long id) {
+        deleteStatement.bindLong(1, id);
+        deleteStatement.executeUpdateDelete();
+    }
+
+    /**
+     * Releases the compiled statements.
+     */
+    void close() {
+        insertStatement.close();
+        updateTitleStatement.close();
+        deleteStatement.close();
+    }
+
+    private static String getNotes(final String detailsJson) {
+        if (detailsJson == null || detailsJson.isEmpty()) return null;
+        Task.Detail detail = DetailAdapter.decode(detailsJson);
+        return detail != null ? detail.getNotes() : null;
+    }
+
+    private static void bindText(@NonNull final SQLiteStatement statement, final int index, final String text) {
+        if (text != null) statement.bindString(index, text);
+        else statement.bindNull(index);
+    }
+
+}
@@ -0,0 +1,186 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Writes batches of {@link Task} objects inside of a single transaction. The insert and update
+ * statements are compiled once per database connection and reused for every row. The
+ * {@link SearchIndex} is updated inside of the same transaction.
+ *
+ * <p>Instances are bound to the connection they were created for and are not thread safe,
+ * the {@link DatabaseHelper} only uses them while holding its lock.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public class TaskBatchWriter {
+
+    private static final String TAG = TaskBatchWriter.class.getSimpleName();
+
+    private final SQLiteDatabase db;
+    private final SQLiteStatement insertStatement;
+    private final SQLiteStatement updateStatement;
+    private final SearchIndex searchIndex;
+
+    /**
+     * Creates a new instance and compiles the statements for the passed database.
+     * @param db An open and writable database.
+     */
+    TaskBatchWriter(@NonNull final SQLiteDatabase db) {
+        this.db = db;
+        this.insertStatement = db.compileStatement(Schema.TaskStatements.SQL_INSERT);
+        this.updateStatement = db.compileStatement(Schema.TaskStatements.SQL_UPDATE);
+        this.searchIndex = new SearchIndex(db);
+    }
+
+    /**
+     * Returns whether this writer can be used for the passed database.
+     * @param db The database to check.
+     * @return <code>true</code> if the statements were compiled for the passed and still open database.
+     */
+    boolean isBoundTo(@NonNull final SQLiteDatabase db) {
+        return this.db == db && db.isOpen();
+    }
+
+    /**
+     * Saves or/and updates all passed tasks inside of a single transaction. If a single row fails
+     * the whole transaction is rolled back and none of the tasks is written.
+     * @param tasks The tasks to save and/or update.
+     * @return The {@link Result} with the row id of every task.
+     */
+    Result write(@NonNull final List<Task> tasks) {
+
+        long[] rowIds = new long[tasks.size()];
+        int failedIndex = Result.NONE;
+        int index = 0;
+
+        db.beginTransaction();
+        try {
+            for (Task task : tasks) {
+                long rowId = writeTask(task);
+                if (rowId == -1) {
+                    failedIndex = index;
+                    break;
+                }
+                rowIds[index++] = rowId;
+            }
+            if (failedIndex == Result.NONE) db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, "Error writing task at index " + index + ": " + e.getLocalizedMessage());
+            failedIndex = index;
+        } finally {
+            db.endTransaction();
+        }
+
+        if (failedIndex != Result.NONE) {
+            //nothing was written, none of the row ids is valid anymore
+            Arrays.fill(rowIds, -1);
+            Log.e(TAG, "Rolled back batch of " + tasks.size() + " task(s), failed at index " + failedIndex);
+        }
+        return new Result(rowIds, failedIndex);
+    }
+
+    /**
+     * Inserts or updates a single task with the precompiled statements.
+     * @param task The {@link Task} to write.
+     * @return The row id of the task or -1 if the row could not be written.
+     */
+    private long writeTask(@NonNull final Task task) {
+
+        if (task.getId() == Task.TRANSIENT) {
+            bindTask(insertStatement, task);
+            long rowId = insertStatement.executeInsert();
+            if (rowId != -1) searchIndex.put(rowId, task);
+            return rowId;
+        }
+
+        bindTask(updateStatement, task);
+        updateStatement.bindLong(Schema.TaskStatements.UPDATE_ARG_ID, task.getId());
+        int count = updateStatement.executeUpdateDelete();
+        if (count != 1) {
+            Log.e(TAG, "Error updating task " + task.getTitle() + " (" + task.getId() + ")");
+            return -1;
+        }
+
+        //the notes can only have changed if the details were decoded
+        if (task.isDetailsLoaded()) searchIndex.put(task.getId(), task);
+        else searchIndex.updateTitle(task.getId(), task.getTitle());
+        return task.getId();
+    }
+
+    /**
+     * Binds the columns of the passed {@link Task} to the first five arguments of the statement.
+     * @param statement The statement to bind the values to.
+     * @param task The {@link Task} to read the values from.
+     */
+    private static void bindTask(@NonNull final SQLiteStatement statement, @NonNull final Task task) {
+
+        if (task.getTitle() != null) statement.bindString(1, task.getTitle());
+        else statement.bindNull(1);
+        statement.bindLong(2, task.getListPosition());
+        if (task.getReminder() != null) statement.bindLong(3, task.getReminder().getTime());
+        else statement.bindLong(3, 0);
+        statement.bindLong(4, task.isDone() ? 1 : 0);
+        statement.bindString(5, task.getDetailsJson());
+    }
+
+    /**
+     * Releases the compiled statements.
+     */
+    void close() {
+        insertStatement.close();
+        updateStatement.close();
+        searchIndex.close();
+    }
+
+    /**
+     * The result of a batch write.
+     */
+    public static class Result {
+
+        /** Indicates that no row failed. */
+        public static final int NONE = -1;
+
+        private final long[] rowIds;
+        private final int failedIndex;
+
+        Result(@NonNull final long[] rowIds, final int failedIndex) {
+            this.rowIds = rowIds;
+            this.failedIndex = failedIndex;
+        }
+
+        /**
+         * Returns whether all tasks of the batch were written.
+         * @return <code>true</code> if the transaction was committed, otherwise <code>false</code>.
+         */
+        public boolean isSuccessful() {
+            return failedIndex == NONE;
+        }
+
+        /**
+         * Returns the row ids of the written tasks in the order of the batch. New tasks get the
+         * row id of the inserted row. If the batch was rolled back all row ids are -1.
+         * @return An array with one row id per task of the batch.
+         */
+        public long[] getRowIds() {
+            return rowIds;
+        }
+
+        /**
+         * Returns the index of the task that caused the rollback.
+         * @return The index in the batch or {@link #NONE} if the batch was successful.
+         */
+        public int getFailedIndex() {
+            return failedIndex;
+        }
+    }
+
+}
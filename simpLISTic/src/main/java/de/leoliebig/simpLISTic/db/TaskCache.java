@@ -0,0 +1,178 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.LongSparseArray;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Process wide write-through cache of {@link Task} objects keyed by their id. The entries are kept in
+ * a {@link LongSparseArray}, so the keys are never boxed, and the least recently used entry is evicted
+ * if the cache is full. The cache stores copies, callers can modify the returned tasks freely.
+ *
+ * <p>All methods are thread safe and only hold the lock of the cache, never the database lock.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public class TaskCache {
+
+    /** The default number of cached tasks. */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final int maxSize;
+    private final LongSparseArray<Entry> entries;
+    //sentinel of the circular usage list, head.next is the most recently used entry
+    private final Entry head = new Entry(Task.TRANSIENT, null);
+
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int evictionCount = 0;
+
+    /**
+     * Creates a new empty cache.
+     * @param maxSize The maximum number of cached tasks, must be larger as 0.
+     */
+    public TaskCache(final int maxSize) {
+        if (maxSize < 1) throw new IllegalArgumentException("The passed size must be larger as 0.");
+        this.maxSize = maxSize;
+        this.entries = new LongSparseArray<>(maxSize);
+        head.previous = head;
+        head.next = head;
+    }
+
+    /**
+     * Returns a copy of the cached task with the passed id.
+     * @param id The id of the task.
+     * @return A copy of the {@link Task} or <code>null</code> if it is not cached.
+     */
+    public synchronized Task get(final long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        unlink(entry);
+        linkFirst(entry);
+        return new Task(entry.task);
+    }
+
+    /**
+     * Stores a copy of the passed task that was just written to or read from the database.
+     * @param task The {@link Task} as stored in the database, its id must be set.
+     */
+    synchronized void put(@NonNull final Task task) {
+        Entry entry = entries.get(task.getId());
+        if (entry != null) {
+            entry.task = new Task(task);
+            unlink(entry);
+        } else {
+            entry = new Entry(task.getId(), new Task(task));
+            entries.put(entry.id, entry);
+        }
+        linkFirst(entry);
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Removes the task with the passed id, is called after it was deleted.
+     * @param id The id of the deleted task.
+     */
+    synchronized void remove(final long id) {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            unlink(entry);
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * Removes all cached tasks.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        head.previous = head;
+        head.next = head;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get(long)} returned a cached task.
+     */
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of times {@link #get(long)} did not find the requested task.
+     */
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of tasks that were evicted because the cache was full.
+     */
+    public synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return "TaskCache[size=" + entries.size() + ",maxSize=" + maxSize + ",hits=" + hitCount
+                + ",misses=" + missCount + ",hitRate=" + hitPercent + "%]";
+    }
+
+    /**
+     * Evicts the least recently used tasks until the cache contains at most the passed number of tasks.
+     * @param size The maximum size of the cache.
+     */
+    private void trimToSize(final int size) {
+        while (entries.size() > size) {
+            Entry eldest = head.previous;
+            unlink(eldest);
+            entries.remove(eldest.id);
+            evictionCount++;
+        }
+    }
+
+    private void linkFirst(@NonNull final Entry entry) {
+        entry.previous = head;
+        entry.next = head.next;
+        head.next.previous = entry;
+        head.next = entry;
+    }
+
+    private static void unlink(@NonNull final Entry entry) {
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /**
+     * A cached task and its links in the usage list.
+     */
+    private static class Entry {
+
+        final long id;
+        Task task;
+        Entry previous;
+        Entry next;
+
+        Entry(final long id, final Task task) {
+            this.id = id;
+            this.task = task;
+        }
+    }
+
+}
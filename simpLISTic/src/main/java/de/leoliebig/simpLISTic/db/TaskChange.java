@@ -0,0 +1,71 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import de.leoliebig.simpLISTic.model.Task;
+
+/**
+ * Describes a single change of the tasks table as published by {@link DatabaseHelper#observeChanges()}.
+ *
+ * @author info@leoliebig.de
+ */
+public class TaskChange {
+
+    /**
+     * The kind of a change.
+     */
+    public enum Type {
+        /** A new task was inserted, the payload is the inserted task. */
+        INSERTED,
+        /** An existing task was updated, the payload is the updated task. */
+        UPDATED,
+        /** Only the list position of an existing task was changed, the payload is the moved task. */
+        MOVED,
+        /** A task was deleted, there is no payload. */
+        DELETED,
+        /** All tasks were deleted, there is neither an id nor a payload. */
+        CLEARED,
+        /** The list positions of all tasks were spread evenly, there is neither an id nor a payload. */
+        REBALANCED
+    }
+
+    private final Type type;
+    private final long id;
+    private final Task task;
+
+    TaskChange(@NonNull final Type type, final long id, @Nullable final Task task) {
+        this.type = type;
+        this.id = id;
+        this.task = task;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the id of the changed task.
+     * @return The id of the task or {@link Task#TRANSIENT} for {@link Type#CLEARED} and {@link Type#REBALANCED}.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the task as it was written to the database. This is the instance passed to the write
+     * method and not a copy.
+     * @return The written {@link Task} or <code>null</code> for {@link Type#DELETED}, {@link Type#CLEARED}
+     *         and {@link Type#REBALANCED}.
+     */
+    @Nullable
+    public Task getTask() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+
+}
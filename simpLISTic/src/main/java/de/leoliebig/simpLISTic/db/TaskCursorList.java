@@ -0,0 +1,703 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+
+import de.leoliebig.simpLISTic.Tracing;
+import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskListDiff;
+import de.leoliebig.simpLISTic.model.TaskOrder;
+import rx.Observer;
+
+/**
+ * A {@link java.util.List} of {@link Task} objects that are loaded from the database when they are
+ * requested. Creating the list only reads the ids and the columns shown in the list of all rows, the
+ * tasks themselves are loaded by their ids in pages of {@value #PAGE_SIZE} and the most recently loaded
+ * tasks are kept in a small cache. No cursor is kept open, so later writes can not change which task
+ * is loaded for an index.
+ *
+ * <p>The list can be modified like any other list. Every index refers to a slot which is either a row
+ * read by {@link DatabaseHelper#getAll()} or a task that was added later. Tasks that were changed after
+ * they were loaded are kept in memory when they leave the cache, so changes are never lost by loading
+ * the row again. The owner of the list applies the changes committed by all writers with
+ * {@link #set(int, Task)}, {@link #add(int, Task)} and {@link #remove(int)}, loaded pages never replace
+ * these tasks.</p>
+ *
+ * <p>{@link #get(int)} loads a missing page synchronously. List items are bound with {@link #peek(int)}
+ * instead, which loads the page in the background and reports the loaded tasks to the
+ * {@link OnTaskLoadedListener}. Index lookups are array accesses, {@link #move(int, int)} only shifts
+ * slots and {@link #indexOfId(long)} searches an id index that is updated by all changes.</p>
+ *
+ * <p>The list is not thread safe, it must be used on the main thread and closed with {@link #close()}
+ * if it is not needed anymore.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public class TaskCursorList extends AbstractList<Task> implements RandomAccess, Closeable, TaskOrder.Positions {
+
+    private static final String TAG = TaskCursorList.class.getSimpleName();
+
+    /**
+     * Receives the tasks that were loaded in the background for {@link #peek(int)}.
+     */
+    public interface OnTaskLoadedListener {
+
+        /**
+         * Is called on the main thread after a task requested by {@link #peek(int)} was loaded.
+         * @param tasks The list that loaded the task.
+         * @param index The current index of the loaded task.
+         */
+        void onTaskLoaded(TaskCursorList tasks, int index);
+    }
+
+    /** The number of rows loaded by a single query. */
+    public static final int PAGE_SIZE = 64;
+    //number of loaded tasks kept in the cache, must be larger as the visible rows of the list
+    private static final int CACHE_SIZE = 4 * PAGE_SIZE;
+    private static final int EMPTY = -1;
+
+    private final DatabaseHelper owner;
+    private final int rowCount;
+
+    //the columns of all rows read by the owner, indexed by slot and never changed
+    private final long[] rowIds;
+    private final boolean[] rowDone;
+    private final int[] rowHashes;
+    //the list positions of all rows, only changed by rebalance()
+    private final long[] rowPositions;
+
+    //maps list indices to slots, slots smaller than rowCount are rows
+    private int[] slots;
+    private int size;
+    private int nextSlot;
+
+    //tasks that were added to the list or were changed after they were loaded
+    private final SparseArray<Task> pinned = new SparseArray<>();
+
+    //direct mapped cache of recently loaded tasks, indexed by slot % CACHE_SIZE
+    private final Task[] cache = new Task[CACHE_SIZE];
+    private final int[] cacheSlots = new int[CACHE_SIZE];
+
+    //ids of all slots sorted by id and the slot of every id
+    private long[] sortedIds;
+    private int[] sortedIdSlots;
+    private int idCount;
+    //index of every slot in the list or -1 if it was removed
+    private int[] slotIndices;
+
+    //pages that are loaded in the background and the slots requested by peek()
+    private final SparseBooleanArray loadingPages = new SparseBooleanArray();
+    private final SparseBooleanArray waitingSlots = new SparseBooleanArray();
+    private OnTaskLoadedListener listener;
+
+    private boolean closed = false;
+
+    /**
+     * Creates a new instance for the passed rows.
+     * @param owner The {@link DatabaseHelper} to load the tasks from.
+     * @param ids The ids of all rows sorted by their list position.
+     * @param positions The list positions of all rows.
+     * @param done The done states of all rows.
+     * @param hashes The {@link TaskListDiff#contentHash(String, long, boolean)} of all rows.
+     */
+    private TaskCursorList(@NonNull final DatabaseHelper owner, @NonNull final long[] ids, @NonNull final long[] positions,
+                           @NonNull final boolean[] done, @NonNull final int[] hashes) {
+        this.owner = owner;
+        this.rowCount = ids.length;
+        this.rowIds = ids;
+        this.rowPositions = positions;
+        this.rowDone = done;
+        this.rowHashes = hashes;
+
+        size = rowCount;
+        nextSlot = rowCount;
+        slots = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) slots[i] = i;
+        Arrays.fill(cacheSlots, EMPTY);
+        buildIdIndex();
+    }
+
+    /**
+     * Reads all rows of the passed cursor and creates a list for them, the cursor is not closed. This
+     * reads every row, so it must not be called on the main thread.
+     *
+     * <p>Reading every row is linear in the number of tasks on purpose: the id index, the done states for
+     * hiding done tasks, the positions for reordering and the hashes for comparing lists need all rows, and
+     * keeping a cursor window open would let later writes change the rows behind the indices. Only four
+     * narrow columns are read per row and no task is created, the first screen is shown from the
+     * {@link FirstScreenStore} before this completes.</p>
+     * @param owner The {@link DatabaseHelper} to load the tasks from.
+     * @param cursor A cursor sorted by the list position with the id, title, list position, due date
+     *               and done columns of the tasks table.
+     * @return The new {@link TaskCursorList}, no task is loaded yet.
+     */
+    static TaskCursorList read(@NonNull final DatabaseHelper owner, @NonNull final Cursor cursor) {
+
+        int columnId = cursor.getColumnIndexOrThrow(Schema.TaskEntry._ID);
+        int columnTitle = cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_TITLE);
+        int columnListPos = cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_LIST_POS);
+        int columnDueDate = cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DUE_DATE);
+        int columnDone = cursor.getColumnIndexOrThrow(Schema.TaskEntry.COLUMN_DONE);
+
+        int count = cursor.getCount();
+        long[] ids = new long[count];
+        long[] positions = new long[count];
+        boolean[] done = new boolean[count];
+        int[] hashes = new int[count];
+        for (int row = 0; row < count && cursor.moveToPosition(row); row++) {
+            ids[row] = cursor.getLong(columnId);
+            positions[row] = cursor.getLong(columnListPos);
+            done[row] = cursor.getInt(columnDone) == 1;
+            hashes[row] = TaskListDiff.contentHash(cursor.getString(columnTitle), cursor.getLong(columnDueDate), done[row]);
+        }
+        return new TaskCursorList(owner, ids, positions, done, hashes);
+    }
+
+    /**
+     * Sets the listener that is notified about the tasks loaded for {@link #peek(int)}.
+     * @param listener The {@link OnTaskLoadedListener} or <code>null</code>.
+     */
+    public void setOnTaskLoadedListener(final OnTaskLoadedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the task at the passed index, if it was not loaded yet its page is loaded synchronously.
+     * @param index The index of the task.
+     * @return The {@link Task} at the passed index.
+     */
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task task = peekSlot(slot);
+        if (task != null) return task;
+
+        loadPage(slot / PAGE_SIZE);
+        task = peekSlot(slot);
+        if (task == null) {
+            //deleted in the meantime, the owner removes it when the change is applied
+            task = createStandIn(slot);
+            putCache(slot, task);
+        }
+        return task;
+    }
+
+    /**
+     * Returns the task at the passed index if it was already loaded. Otherwise its page is loaded in
+     * the background and the {@link OnTaskLoadedListener} is notified when the task is available.
+     * @param index The index of the task.
+     * @return The {@link Task} at the passed index or <code>null</code> if it is being loaded.
+     */
+    public Task peek(final int index) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task task = peekSlot(slot);
+        if (task == null) {
+            waitingSlots.put(slot, true);
+            requestPage(slot / PAGE_SIZE);
+        }
+        return task;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Replaces the task at the passed index without loading the previous one. If the previous task
+     * was not loaded a stand-in with the columns read by the owner is returned.
+     */
+    @Override
+    public Task set(int index, Task task) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task previous = peekSlot(slot);
+        if (previous == null) previous = createStandIn(slot);
+        if (task != previous) {
+            pinned.put(slot, task);
+            evict(slot);
+            waitingSlots.delete(slot);
+            if (previous.getId() != task.getId()) {
+                removeId(previous.getId(), slot);
+                insertId(task.getId(), slot);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Task task) {
+        checkIndex(index, size + 1);
+        if (size == slots.length) slots = Arrays.copyOf(slots, Math.max(16, size * 2));
+
+        System.arraycopy(slots, index, slots, index + 1, size - index);
+        int slot = nextSlot++;
+        slots[index] = slot;
+        pinned.put(slot, task);
+        size++;
+        modCount++;
+
+        if (slot == slotIndices.length) slotIndices = Arrays.copyOf(slotIndices, slot * 2 + 16);
+        updateSlotIndices(index);
+        insertId(task.getId(), slot);
+    }
+
+    /**
+     * Removes the task at the passed index without loading it. If the task was not loaded a stand-in
+     * with the columns read by the owner is returned.
+     */
+    @Override
+    public Task remove(int index) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task task = peekSlot(slot);
+        if (task == null) task = createStandIn(slot);
+
+        System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+        size--;
+        pinned.remove(slot);
+        evict(slot);
+        waitingSlots.delete(slot);
+        modCount++;
+
+        slotIndices[slot] = -1;
+        updateSlotIndices(index);
+        removeId(task.getId(), slot);
+        return task;
+    }
+
+    /**
+     * Moves the task at the first index to the second index without loading or changing any task, the
+     * tasks in between are shifted by one. Cheaper than removing and adding the task.
+     * @param from The current index of the task.
+     * @param to The new index of the task.
+     */
+    public void move(final int from, final int to) {
+        checkIndex(from, size);
+        checkIndex(to, size);
+        if (from == to) return;
+        int slot = slots[from];
+        if (from < to) System.arraycopy(slots, from + 1, slots, from, to - from);
+        else System.arraycopy(slots, to, slots, to + 1, from - to);
+        slots[to] = slot;
+        for (int index = Math.min(from, to); index <= Math.max(from, to); index++) slotIndices[slots[index]] = index;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        idCount = 0;
+        Arrays.fill(slotIndices, -1);
+        pinned.clear();
+        waitingSlots.clear();
+        Arrays.fill(cache, null);
+        Arrays.fill(cacheSlots, EMPTY);
+        modCount++;
+    }
+
+    /**
+     * Returns the index of the task with the passed id by searching the id index.
+     * @param id The id of the task to find.
+     * @return The index of the task or -1 if the list does not contain it.
+     */
+    public int indexOfId(final long id) {
+        int position = Arrays.binarySearch(sortedIds, 0, idCount, id);
+        return position >= 0 ? slotIndices[sortedIdSlots[position]] : -1;
+    }
+
+    /**
+     * Checks whether the passed instance is the one held by the list, without loading any task.
+     * @param task The {@link Task} to check, e.g. a copy from the search results.
+     * @return <code>true</code> if the list holds exactly this instance.
+     */
+    public boolean holds(@NonNull final Task task) {
+        int index = indexOfId(task.getId());
+        return index != -1 && peekSlot(slots[index]) == task;
+    }
+
+    /**
+     * Creates the id index and the index of every slot from the rows.
+     */
+    private void buildIdIndex() {
+        //sort the ids and keep the slot of every id
+        sortedIds = Arrays.copyOf(rowIds, Math.max(16, rowCount));
+        Arrays.sort(sortedIds, 0, rowCount);
+        sortedIdSlots = new int[sortedIds.length];
+        for (int slot = 0; slot < rowCount; slot++) {
+            sortedIdSlots[Arrays.binarySearch(sortedIds, 0, rowCount, rowIds[slot])] = slot;
+        }
+        idCount = rowCount;
+
+        slotIndices = new int[Math.max(16, rowCount)];
+        Arrays.fill(slotIndices, -1);
+        for (int index = 0; index < size; index++) slotIndices[slots[index]] = index;
+    }
+
+    private void insertId(final long id, final int slot) {
+        int position = Arrays.binarySearch(sortedIds, 0, idCount, id);
+        if (position < 0) position = -(position + 1);
+        if (idCount == sortedIds.length) {
+            sortedIds = Arrays.copyOf(sortedIds, idCount * 2);
+            sortedIdSlots = Arrays.copyOf(sortedIdSlots, idCount * 2);
+        }
+        System.arraycopy(sortedIds, position, sortedIds, position + 1, idCount - position);
+        System.arraycopy(sortedIdSlots, position, sortedIdSlots, position + 1, idCount - position);
+        sortedIds[position] = id;
+        sortedIdSlots[position] = slot;
+        idCount++;
+    }
+
+    private void removeId(final long id, final int slot) {
+        int position = Arrays.binarySearch(sortedIds, 0, idCount, id);
+        if (position < 0) return;
+        //the same id can be contained more than once, e.g. transient tasks
+        while (position > 0 && sortedIds[position - 1] == id) position--;
+        while (position < idCount && sortedIds[position] == id && sortedIdSlots[position] != slot) position++;
+        if (position == idCount || sortedIds[position] != id) return;
+
+        System.arraycopy(sortedIds, position + 1, sortedIds, position, idCount - position - 1);
+        System.arraycopy(sortedIdSlots, position + 1, sortedIdSlots, position, idCount - position - 1);
+        idCount--;
+    }
+
+    /**
+     * Updates the indices of all slots from the passed index to the end of the list.
+     * @param fromIndex The first index that changed.
+     */
+    private void updateSlotIndices(final int fromIndex) {
+        for (int index = fromIndex; index < size; index++) slotIndices[slots[index]] = index;
+    }
+
+    /**
+     * Returns the id of the task at the passed index without loading it.
+     * @param index The index of the task.
+     * @return The id of the task.
+     */
+    public long getId(final int index) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task task = peekSlot(slot);
+        return task != null ? task.getId() : rowIds[slot];
+    }
+
+    /**
+     * Returns whether the task at the passed index is done without loading it.
+     * @param index The index of the task.
+     * @return <code>true</code> if the task is done.
+     */
+    public boolean isDone(final int index) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task task = peekSlot(slot);
+        return task != null ? task.isDone() : rowDone[slot];
+    }
+
+    /**
+     * Returns the list position of the task at the passed index without loading it.
+     * @param index The index of the task.
+     * @return The list position of the task.
+     */
+    @Override
+    public long getListPosition(final int index) {
+        checkIndex(index, size);
+        int slot = slots[index];
+        Task task = peekSlot(slot);
+        return task != null ? task.getListPosition() : rowPositions[slot];
+    }
+
+    /**
+     * Returns copies of the first tasks of the list without loading any task, e.g. for storing them
+     * on another thread.
+     * @param ids Receives the ids of the first tasks in list order, its length is the maximum number of tasks.
+     * @param tasks Receives copies of the first tasks that are in memory, <code>null</code> for tasks that
+     *              still have to be loaded. Must have the same length as the ids.
+     * @param excludeDone <code>true</code> if done tasks should be skipped.
+     * @return The number of tasks written to the arrays.
+     */
+    int copyFirst(@NonNull final long[] ids, @NonNull final Task[] tasks, final boolean excludeDone) {
+        int count = 0;
+        for (int index = 0; index < size && count < ids.length; index++) {
+            int slot = slots[index];
+            Task task = peekSlot(slot);
+            if (excludeDone && (task != null ? task.isDone() : rowDone[slot])) continue;
+            ids[count] = task != null ? task.getId() : rowIds[slot];
+            tasks[count++] = task != null ? new Task(task) : null;
+        }
+        return count;
+    }
+
+    /**
+     * Spreads the positions of all tasks evenly like {@link TaskOrder#rebalance(List)}, without loading
+     * the tasks. Only the positions in memory are changed, the returned ids have to be written with
+     * {@link TaskWriteQueue#rebalance(long[], TaskWriteQueue.Callback)}.
+     * @return The ids of all tasks in list order, the task at index i has the position i * GAP.
+     */
+    public long[] rebalance() {
+        long[] ids = new long[size];
+        for (int index = 0; index < size; index++) {
+            int slot = slots[index];
+            long position = index * TaskOrder.GAP;
+            if (slot < rowCount) rowPositions[slot] = position;
+
+            Task task = peekSlot(slot);
+            if (task != null) {
+                task.setListPosition(position);
+                ids[index] = task.getId();
+            } else {
+                ids[index] = rowIds[slot];
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Prepares a {@link TaskListDiff.Snapshot} of the list that is created by the returned {@link Callable}.
+     * Only the slots and the values of the tasks in memory are copied on the calling thread, the snapshot
+     * itself is created from the rows read by the owner when the {@link Callable} is called, which can be
+     * on any thread. Creating the snapshot does not load any tasks.
+     * @param excludeDone <code>true</code> if only tasks that are not done should be part of the snapshot.
+     * @return A {@link Callable} returning the {@link TaskListDiff.Snapshot} of the current content.
+     */
+    public Callable<TaskListDiff.Snapshot> snapshot(final boolean excludeDone) {
+
+        final int[] slots = Arrays.copyOf(this.slots, size);
+        final int slotCount = nextSlot;
+
+        //the values of the tasks in memory, the pinned tasks are copied last and win over the cache
+        int capacity = CACHE_SIZE + pinned.size();
+        final int[] memorySlots = new int[capacity];
+        final long[] memoryIds = new long[capacity];
+        final int[] memoryHashes = new int[capacity];
+        final boolean[] memoryDone = new boolean[capacity];
+        int count = 0;
+        for (int i = 0; i < CACHE_SIZE + pinned.size(); i++) {
+            Task task;
+            if (i < CACHE_SIZE) {
+                if (cacheSlots[i] == EMPTY) continue;
+                memorySlots[count] = cacheSlots[i];
+                task = cache[i];
+            } else {
+                memorySlots[count] = pinned.keyAt(i - CACHE_SIZE);
+                task = pinned.valueAt(i - CACHE_SIZE);
+            }
+            memoryIds[count] = task.getId();
+            memoryHashes[count] = TaskListDiff.contentHash(task);
+            memoryDone[count++] = task.isDone();
+        }
+        final int memoryCount = count;
+
+        return new Callable<TaskListDiff.Snapshot>() {
+            @Override
+            public TaskListDiff.Snapshot call() {
+                int[] memoryIndices = new int[slotCount];
+                Arrays.fill(memoryIndices, -1);
+                for (int i = 0; i < memoryCount; i++) memoryIndices[memorySlots[i]] = i;
+
+                //the row arrays are never changed after the list was created
+                long[] ids = new long[slots.length];
+                int[] hashes = new int[slots.length];
+                int count = 0;
+                for (int slot : slots) {
+                    int memoryIndex = memoryIndices[slot];
+                    if (memoryIndex != -1) {
+                        if (excludeDone && memoryDone[memoryIndex]) continue;
+                        ids[count] = memoryIds[memoryIndex];
+                        hashes[count++] = memoryHashes[memoryIndex];
+                    } else {
+                        if (excludeDone && rowDone[slot]) continue;
+                        ids[count] = rowIds[slot];
+                        hashes[count++] = rowHashes[slot];
+                    }
+                }
+                if (count < slots.length) {
+                    ids = Arrays.copyOf(ids, count);
+                    hashes = Arrays.copyOf(hashes, count);
+                }
+                return new TaskListDiff.Snapshot(ids, hashes);
+            }
+        };
+    }
+
+    /**
+     * Drops the results of running background loads and removes the {@link OnTaskLoadedListener}.
+     * Tasks that were not loaded yet can still be loaded by {@link #get(int)}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        listener = null;
+        waitingSlots.clear();
+    }
+
+    /**
+     * Returns the task of the passed slot only if it was already loaded.
+     * @param slot The slot to read.
+     * @return The {@link Task} of the slot or <code>null</code> if it has to be loaded.
+     */
+    private Task peekSlot(final int slot) {
+        Task task = pinned.get(slot);
+        if (task == null && cacheSlots[slot % CACHE_SIZE] == slot) task = cache[slot % CACHE_SIZE];
+        return task;
+    }
+
+    /**
+     * Creates a {@link Task} from the columns read by the owner, for rows that can not be loaded.
+     * @param slot The slot of the row.
+     * @return The new {@link Task} without title and details.
+     */
+    private Task createStandIn(final int slot) {
+        return new Task(rowIds[slot], "", rowPositions[slot], 0, rowDone[slot] ? 1 : 0, null);
+    }
+
+    /**
+     * Returns the ids of the rows of the passed page that are still part of the list and not loaded.
+     * @param page The page to load.
+     * @return The ids to load, may be empty.
+     */
+    private long[] getMissingIds(final int page) {
+        int from = page * PAGE_SIZE;
+        int to = Math.min(rowCount, from + PAGE_SIZE);
+        long[] ids = new long[to - from];
+        int count = 0;
+        for (int slot = from; slot < to; slot++) {
+            if (slotIndices[slot] != -1 && peekSlot(slot) == null) ids[count++] = rowIds[slot];
+        }
+        return count < ids.length ? Arrays.copyOf(ids, count) : ids;
+    }
+
+    /**
+     * Loads the missing tasks of the passed page synchronously.
+     * @param page The page to load.
+     */
+    private void loadPage(final int page) {
+        Tracing.begin("TaskCursorList.loadPage");
+        try {
+            long[] ids = getMissingIds(page);
+            if (ids.length > 0) onPageLoaded(owner.getTasks(ids));
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Loads the missing tasks of the passed page in the background, unless it is already being loaded.
+     * @param page The page to load.
+     */
+    private void requestPage(final int page) {
+        if (closed || loadingPages.get(page)) return;
+        long[] ids = getMissingIds(page);
+        if (ids.length == 0) return;
+
+        loadingPages.put(page, true);
+        owner.getTasksAsync(new Observer<List<Task>>() {
+            @Override
+            public void onCompleted() {
+                //nothing to do
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                loadingPages.delete(page);
+                Log.e(TAG, "Error loading page " + page + ": " + e.getLocalizedMessage());
+            }
+
+            @Override
+            public void onNext(List<Task> tasks) {
+                loadingPages.delete(page);
+                if (!closed) onPageLoaded(tasks);
+            }
+        }, ids);
+    }
+
+    /**
+     * Adds the loaded tasks to the cache. Slots that were loaded, changed or removed in the meantime
+     * are not replaced. The {@link OnTaskLoadedListener} is notified about the slots requested by
+     * {@link #peek(int)}.
+     * @param tasks The loaded tasks in any order.
+     */
+    private void onPageLoaded(@NonNull final List<Task> tasks) {
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            int position = Arrays.binarySearch(sortedIds, 0, idCount, task.getId());
+            if (position < 0) continue;
+            int slot = sortedIdSlots[position];
+            if (slot >= rowCount || peekSlot(slot) != null) continue;
+
+            //the page may have been read before a rebalance was written
+            task.setListPosition(rowPositions[slot]);
+            putCache(slot, task);
+            if (waitingSlots.get(slot)) {
+                waitingSlots.delete(slot);
+                if (listener != null) listener.onTaskLoaded(this, slotIndices[slot]);
+            }
+        }
+    }
+
+    /**
+     * Adds the passed task to the cache and releases the previous entry.
+     * @param slot The slot of the task.
+     * @param task The loaded {@link Task}.
+     */
+    private void putCache(final int slot, @NonNull final Task task) {
+        int cacheIndex = slot % CACHE_SIZE;
+        release(cacheIndex);
+        cache[cacheIndex] = task;
+        cacheSlots[cacheIndex] = slot;
+    }
+
+    /**
+     * Removes the passed slot from the cache without keeping its task.
+     * @param slot The slot to remove.
+     */
+    private void evict(final int slot) {
+        int cacheIndex = slot % CACHE_SIZE;
+        if (cacheSlots[cacheIndex] == slot) {
+            cache[cacheIndex] = null;
+            cacheSlots[cacheIndex] = EMPTY;
+        }
+    }
+
+    /**
+     * Releases the cache entry at the passed index. If its task was changed since it was loaded it
+     * is pinned to its slot.
+     * @param cacheIndex The index in the cache.
+     */
+    private void release(final int cacheIndex) {
+        int slot = cacheSlots[cacheIndex];
+        if (slot == EMPTY) return;
+
+        Task task = cache[cacheIndex];
+        if (slot < rowCount && pinned.get(slot) == null && isChanged(task, slot)) pinned.put(slot, task);
+        cache[cacheIndex] = null;
+        cacheSlots[cacheIndex] = EMPTY;
+    }
+
+    /**
+     * Checks whether the passed {@link Task} differs from the row read by the owner.
+     * @param task The task to check.
+     * @param slot The slot of the row.
+     * @return <code>true</code> if one of the columns shown in the list changed.
+     */
+    private boolean isChanged(@NonNull final Task task, final int slot) {
+        return task.getListPosition() != rowPositions[slot] || TaskListDiff.contentHash(task) != rowHashes[slot];
+    }
+
+    private static void checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+}
@@ -0,0 +1,392 @@
+package de.leoliebig.simpLISTic.db;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.leoliebig.simpLISTic.Global;
+import de.leoliebig.simpLISTic.model.Task;
+import rx.Scheduler;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Writes tasks on a single background thread, so the main thread never waits for the disk. Commands
+ * are collected for a short window and then written together, all saves inside of one transaction and
+ * all deletes inside of another one. Repeated commands for the same task are coalesced, only the latest
+ * state of a task is written and a delete overrides all pending saves of the task. Deleting all tasks
+ * overrides every pending command, commands added afterwards are written after the table was cleared.
+ * Rebalancing the list positions is written after all other commands of the same window.
+ *
+ * <p>The passed tasks are copied when a command is added, so they can be changed right after the call.
+ * Commands should be added on the main thread, the {@link Callback}s are invoked there as well.</p>
+ *
+ * @author info@leoliebig.de
+ */
+public class TaskWriteQueue {
+
+    private static final String TAG = TaskWriteQueue.class.getSimpleName();
+
+    /** Default time in milliseconds commands are collected before they are written. */
+    public static final long DEFAULT_WINDOW = 100;
+
+    private static final int SAVE = 0;
+    private static final int MOVE = 1;
+    private static final int DELETE = 2;
+    private static final int CLEAR = 3;
+    private static final int REBALANCE = 4;
+
+    /**
+     * Receives the result of a command.
+     */
+    public interface Callback {
+
+        /**
+         * Is called on the main thread after the command was written.
+         * @param id The row id of the saved task or the id of the deleted task. New tasks that could
+         *           not be saved and deleting all tasks have the id {@link Task#TRANSIENT}.
+         * @param successful <code>false</code> if the task could not be written or was not found.
+         */
+        void onWritten(long id, boolean successful);
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final long window;
+    private final Scheduler scheduler;
+    private final Scheduler.Worker writer;
+    private final Scheduler.Worker mainThread = AndroidSchedulers.mainThread().createWorker();
+
+    //the following fields are guarded by this instance
+    //pending commands by task id, transient tasks are keyed by their instance
+    private Map<Object, Command> pending = new LinkedHashMap<>();
+    //set by deleteAll(), the table is cleared before the pending commands are written
+    private Command clear = null;
+    //set by rebalance(), the positions are written after all other pending commands
+    private Command rebalance = null;
+    private long[] rebalancedIds = null;
+    //commands overridden by deleteAll(), they report a failure
+    private List<Command> dropped = new ArrayList<>();
+    private boolean flushScheduled = false;
+    //inserted transient tasks whose new id was not set yet
+    private final Map<Task, Long> insertedIds = new IdentityHashMap<>();
+
+    private final Action0 flushAction = new Action0() {
+        @Override
+        public void call() {
+            flushPending();
+        }
+    };
+
+    /**
+     * Creates a new queue with its own writing thread.
+     * @param dbHelper The {@link DatabaseHelper} to write with.
+     * @param window The time in milliseconds commands are collected before they are written.
+     */
+    TaskWriteQueue(@NonNull final DatabaseHelper dbHelper, final long window) {
+        this.dbHelper = dbHelper;
+        this.window = window;
+        this.scheduler = Schedulers.from(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+        this.writer = scheduler.createWorker();
+    }
+
+    /**
+     * Returns the {@link Scheduler} of the writing thread. Other asynchronous writes are subscribed on
+     * it as well, so there is only a single thread writing to the database.
+     */
+    Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Saves or updates the passed task. New tasks get their id before the callback is invoked.
+     * @param task The {@link Task} to save.
+     * @param callback The {@link Callback} to notify or <code>null</code>.
+     */
+    public void save(@NonNull final Task task, @Nullable final Callback callback) {
+        Task copy = new Task(task);
+        //decoded details may have changed and are indexed again
+        if (task.isDetailsLoaded()) copy.getDetails();
+        enqueue(SAVE, task, copy, callback);
+    }
+
+    /**
+     * Updates the list position of the passed task, the change is published as {@link TaskChange.Type#MOVED}.
+     * A pending save of the same task is written with the new position instead.
+     * @param task The moved {@link Task}.
+     * @param callback The {@link Callback} to notify or <code>null</code>.
+     */
+    public void move(@NonNull final Task task, @Nullable final Callback callback) {
+        enqueue(MOVE, task, new Task(task), callback);
+    }
+
+    /**
+     * Deletes the task with the passed id, pending saves of the task are dropped.
+     * @param id The id of the {@link Task}.
+     * @param callback The {@link Callback} to notify or <code>null</code>.
+     */
+    public synchronized void delete(final long id, @Nullable final Callback callback) {
+        if (id == Task.TRANSIENT) {
+            Log.w(TAG, "The requested task to delete was transient");
+            if (callback != null) callback.onWritten(id, false);
+            return;
+        }
+        addCommand(id, DELETE, null, null, callback);
+    }
+
+    /**
+     * Deletes all tasks, the change is published as {@link TaskChange.Type#CLEARED}. Pending commands
+     * are dropped and report a failure.
+     * @param callback The {@link Callback} to notify or <code>null</code>.
+     */
+    public synchronized void deleteAll(@Nullable final Callback callback) {
+        dropped.addAll(pending.values());
+        pending.clear();
+        if (rebalance != null) dropped.add(rebalance);
+        rebalance = null;
+        rebalancedIds = null;
+        if (clear == null) clear = new Command(CLEAR, Task.TRANSIENT, null, null);
+        if (callback != null) clear.callbacks.add(callback);
+        scheduleFlush();
+    }
+
+    /**
+     * Spreads the list positions of all tasks evenly, the change is published as
+     * {@link TaskChange.Type#REBALANCED}. The positions are written after all pending commands, so
+     * pending moves can not override them. A pending rebalance is replaced by the passed one.
+     * @param ids The ids of all tasks in list order, see {@link DatabaseHelper#rebalance(long[])}.
+     * @param callback The {@link Callback} to notify or <code>null</code>.
+     */
+    public synchronized void rebalance(@NonNull final long[] ids, @Nullable final Callback callback) {
+        if (rebalance == null) rebalance = new Command(REBALANCE, Task.TRANSIENT, null, null);
+        rebalancedIds = ids;
+        if (callback != null) rebalance.callbacks.add(callback);
+        scheduleFlush();
+    }
+
+    /**
+     * Writes all pending commands without waiting for the end of the current window, e.g. because the
+     * process may be killed soon.
+     */
+    public synchronized void flush() {
+        if (!pending.isEmpty() || clear != null || rebalance != null) writer.schedule(flushAction);
+    }
+
+    private synchronized void enqueue(final int type, @NonNull final Task task, @NonNull final Task copy,
+                                      @Nullable final Callback callback) {
+
+        Object key;
+        if (task.getId() != Task.TRANSIENT) {
+            key = task.getId();
+        } else {
+            //already inserted, but the callback did not set the id yet
+            Long insertedId = insertedIds.get(task);
+            if (insertedId != null) copy.setId(insertedId);
+            key = insertedId != null ? insertedId : task;
+        }
+        addCommand(key, type, task, copy, callback);
+    }
+
+    private void addCommand(@NonNull final Object key, final int type, final Task original, final Task copy,
+                            @Nullable final Callback callback) {
+
+        Command command = pending.get(key);
+        if (command == null) {
+            long id = key instanceof Long ? (Long) key : Task.TRANSIENT;
+            command = new Command(type, id, original, copy);
+            pending.put(key, command);
+        } else {
+            command.merge(type, copy);
+        }
+        if (callback != null) command.callbacks.add(callback);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            writer.schedule(flushAction, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all pending commands, is called on the writing thread.
+     */
+    private void flushPending() {
+
+        Map<Object, Command> commands;
+        Command clearCommand;
+        Command rebalanceCommand;
+        long[] ids;
+        List<Command> droppedCommands;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty() && clear == null && rebalance == null) return;
+            commands = pending;
+            pending = new LinkedHashMap<>();
+            clearCommand = clear;
+            clear = null;
+            rebalanceCommand = rebalance;
+            ids = rebalancedIds;
+            rebalance = null;
+            rebalancedIds = null;
+            droppedCommands = dropped;
+            dropped = new ArrayList<>();
+        }
+
+        List<Command> saves = new ArrayList<>();
+        List<Command> moves = new ArrayList<>();
+        List<Command> deletes = new ArrayList<>();
+        for (Command command : commands.values()) {
+            if (command.type == SAVE) saves.add(command);
+            else if (command.type == MOVE) moves.add(command);
+            else deletes.add(command);
+        }
+
+        try {
+            if (clearCommand != null) {
+                dbHelper.deleteAll();
+                clearCommand.successful = true;
+            }
+            write(saves, false);
+            write(moves, true);
+            delete(deletes);
+            if (rebalanceCommand != null) {
+                dbHelper.rebalance(ids);
+                rebalanceCommand.successful = true;
+            }
+        } catch (RuntimeException e) {
+            //the commands that were not written yet report a failure
+            Log.e(TAG, "Error writing tasks: " + e.getLocalizedMessage());
+        }
+
+        if (Global.DEBUG) Log.d(TAG, "Wrote " + commands.size() + " command(s)");
+        if (clearCommand != null) {
+            droppedCommands.add(clearCommand);
+            deliver(droppedCommands);
+        }
+        deliver(commands.values());
+        if (rebalanceCommand != null) deliver(Collections.singletonList(rebalanceCommand));
+    }
+
+    private void write(@NonNull final List<Command> commands, final boolean moved) {
+
+        if (commands.isEmpty()) return;
+
+        List<Task> tasks = new ArrayList<>(commands.size());
+        for (Command command : commands) tasks.add(command.task);
+        TaskBatchWriter.Result result = dbHelper.writeAll(tasks, moved);
+
+        if (result.isSuccessful()) {
+            long[] rowIds = result.getRowIds();
+            for (int i = 0; i < rowIds.length; i++) commands.get(i).onWritten(rowIds[i]);
+        } else if (commands.size() > 1) {
+            //a single failing task should not discard the others, write them one by one
+            for (Command command : commands) {
+                result = dbHelper.writeAll(Collections.singletonList(command.task), moved);
+                if (result.isSuccessful()) command.onWritten(result.getRowIds()[0]);
+            }
+        }
+    }
+
+    private void delete(@NonNull final List<Command> commands) {
+
+        if (commands.isEmpty()) return;
+
+        long[] ids = new long[commands.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = commands.get(i).id;
+        int[] counts = dbHelper.deleteTasks(ids);
+        for (int i = 0; i < ids.length; i++) commands.get(i).successful = counts[i] > 0;
+    }
+
+    /**
+     * Sets the ids of inserted tasks and invokes the callbacks on the main thread.
+     * @param commands The written commands.
+     */
+    private void deliver(@NonNull final Collection<Command> commands) {
+
+        synchronized (this) {
+            for (Command command : commands) {
+                if (command.insert && command.successful) insertedIds.put(command.original, command.id);
+            }
+        }
+
+        mainThread.schedule(new Action0() {
+            @Override
+            public void call() {
+                for (Command command : commands) {
+                    if (command.insert && command.successful) {
+                        if (command.original.getId() == Task.TRANSIENT) command.original.setId(command.id);
+                        synchronized (TaskWriteQueue.this) {
+                            insertedIds.remove(command.original);
+                        }
+                    }
+                    for (Callback callback : command.callbacks) callback.onWritten(command.id, command.successful);
+                }
+            }
+        });
+    }
+
+    /**
+     * A pending write of a single task.
+     */
+    private static final class Command {
+
+        int type;
+        long id;
+        //true if the task had no id when the command was added, false for deleting all tasks and rebalancing
+        final boolean insert;
+        //the task passed by the caller, only used for setting the id of inserted tasks
+        final Task original;
+        //the copy to write, null for deletes
+        Task task;
+        boolean successful = false;
+        final List<Callback> callbacks = new ArrayList<>(1);
+
+        Command(final int type, final long id, final Task original, final Task task) {
+            this.type = type;
+            this.id = id;
+            this.original = original;
+            this.task = task;
+            this.insert = id == Task.TRANSIENT && original != null;
+        }
+
+        void merge(final int type, final Task task) {
+            //deleted tasks stay deleted
+            if (this.type == DELETE) return;
+            if (type == DELETE) {
+                this.type = DELETE;
+                this.task = null;
+            } else if (type == MOVE && this.type == SAVE) {
+                this.task.setListPosition(task.getListPosition());
+            } else {
+                this.type = type;
+                this.task = task;
+            }
+        }
+
+        void onWritten(final long rowId) {
+            id = rowId;
+            successful = true;
+        }
+    }
+
+}
@@ -15,14 +15,25 @@ import android.view.ViewGroup;
 
 import com.squareup.leakcanary.RefWatcher;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import de.leoliebig.simpLISTic.FrameTimer;
 import de.leoliebig.simpLISTic.Global;
+import de.leoliebig.simpLISTic.Tracing;
 import de.leoliebig.wundertest.R;
 import de.leoliebig.simpLISTic.controller.TaskAdapter;
+import de.leoliebig.simpLISTic.db.TaskCursorList;
 import de.leoliebig.simpLISTic.model.Task;
+import de.leoliebig.simpLISTic.model.TaskListDiff;
+import de.leoliebig.simpLISTic.model.TaskOrder;
+import rx.Observable;
+import rx.Observer;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 
 /**
  * Implements the GUI for displaying a list of tasks.
@@ -32,14 +43,25 @@ import de.leoliebig.simpLISTic.model.Task;
  *
  * @author info@leoliebig.de
  */
-public class TasksFragment extends Fragment implements TaskAdapter.ItemActionListener {
+public class TasksFragment extends Fragment implements TaskAdapter.ItemActionListener, TaskCursorList.OnTaskLoadedListener {
 
     private static final String TAG = TasksFragment.class.getSimpleName();
 
     private Context context;
     private OnFragmentInteraction listener;
-    private List<Task> tasks = new LinkedList<>();
-    private RecyclerView.Adapter adapter;
+    //random access is required, the adapter and the drag callback access the tasks by index
+    private List<Task> tasks = new ArrayList<>();
+    private TaskAdapter adapter;
+    //search results only contain some of the tasks, so they can not be reordered
+    private boolean reorderEnabled = true;
+    //the shown tasks were read from a snapshot and can not be changed until the list was loaded
+    private boolean preview = false;
+
+    //more updates are slower than rebinding all visible items
+    private static final int MAX_DIFF_OPERATIONS = 64;
+    //the list that is shown after the running diff completed
+    private List<Task> pendingTasks = null;
+    private Subscription subDiff;
 
     public TasksFragment() {
         // Required empty public constructor
@@ -56,6 +78,14 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
 
         adapter = new TaskAdapter(tasks, this);
         recyclerView.setAdapter(adapter);
+        //records the frame times while scrolling, the listener is called for every scrolled frame
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                FrameTimer.onInteraction();
+            }
+        });
+        if(tasks instanceof TaskCursorList) ((TaskCursorList) tasks).setOnTaskLoadedListener(this);
 
         TaskTouchCallback taskTouchCallback = new TaskTouchCallback();
         ItemTouchHelper itemTouchHelper = new ItemTouchHelper(taskTouchCallback);
@@ -82,6 +112,14 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
         super.onDetach();
     }
 
+    @Override
+    public void onDestroyView() {
+        flushPendingUpdate();
+        //the list is owned by the activity and can outlive the view
+        if(tasks instanceof TaskCursorList) ((TaskCursorList) tasks).setOnTaskLoadedListener(null);
+        super.onDestroyView();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -89,36 +127,251 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
         refWatcher.watch(this);
     }
 
+    //OnTaskLoadedListener callbacks
+
+    @Override
+    public void onTaskLoaded(@NonNull final TaskCursorList tasks, final int index) {
+        //the item was bound without its task, only the shown list is bound
+        if(tasks == this.tasks && adapter != null) adapter.notifyTaskChanged(index);
+    }
+
     //ItemActionListener callbacks
 
     @Override
-    public void onItemChecked(@NonNull final Task task, final boolean isChecked) {
+    public void onItemChecked(@NonNull final Task task, final int position, final boolean isChecked) {
+        if(preview){
+            //restore the checkbox
+            if(position != RecyclerView.NO_POSITION) adapter.notifyItemChanged(position);
+            return;
+        }
         if(Global.DEBUG) Log.d(TAG, "Item checked: " + task.getTitle());
+        FrameTimer.onInteraction();
         task.setDone(isChecked);
-        adapter.notifyDataSetChanged();
+        //hides the task if done tasks are hidden
+        if(position != RecyclerView.NO_POSITION) notifyTaskChanged(adapter.getListIndex(position), TaskAdapter.Change.DONE);
         listener.onTaskDone(task);
     }
 
     @Override
     public void onTitleClicked(@NonNull final Task task) {
+        if(preview) return;
         if(Global.DEBUG) Log.d(TAG, "Item edit: " + task.getTitle());
         listener.onTaskEdit(task);
     }
 
     /**
-     * Updates the data and the list view of the fragment
+     * Updates the data and the list view of the fragment. The passed list is used directly
+     * and not copied, so lazily loaded tasks are only read if they become visible. The shown and
+     * the passed list are compared on a background thread and only the changed items are updated,
+     * the passed list is shown when the comparison completed.
      * @param tasks The changed list of {@link Task} objects.
      */
-    public synchronized void updateContent(@NonNull final List<Task> tasks){
+    public void updateContent(@NonNull final List<Task> tasks){
 
-        //updating the profiles collection
-        //note: clear() and addAll() necessary to keep the same reference as the adapter
-        //a reassignment of profiles makes the call adapter.notifyDataSetChanged() useless
-        this.tasks.clear();
-        this.tasks.addAll(tasks);
+        Tracing.begin("TasksFragment.updateContent");
+        try {
+            cancelPendingUpdate();
 
-        //notify the adapter and invalidate the list views
-        adapter.notifyDataSetChanged();
+            //nothing to compare, the items are added or removed at once
+            if(tasks == this.tasks || this.tasks.isEmpty() || tasks.isEmpty()){
+                showTasks(tasks, null);
+                return;
+            }
+
+            //only copies the slots of lazily loaded lists, the snapshots are created on the worker
+            final Callable<TaskListDiff.Snapshot> oldSnapshotTask = snapshotOf(this.tasks);
+            final Callable<TaskListDiff.Snapshot> newSnapshotTask = snapshotOf(tasks);
+            pendingTasks = tasks;
+
+            subDiff = Observable.create(new Observable.OnSubscribe<TaskListDiff.Result>() {
+                        @Override
+                        public void call(Subscriber<? super TaskListDiff.Result> subscriber) {
+                            try {
+                                TaskListDiff.Snapshot oldSnapshot = oldSnapshotTask.call();
+                                TaskListDiff.Snapshot newSnapshot = newSnapshotTask.call();
+                                if(oldSnapshot.hasUniqueIds() && newSnapshot.hasUniqueIds()) {
+                                    subscriber.onNext(TaskListDiff.compute(oldSnapshot, newSnapshot, MAX_DIFF_OPERATIONS));
+                                }
+                                else{
+                                    subscriber.onNext(TaskListDiff.Result.FULL_RELOAD);
+                                }
+                                subscriber.onCompleted();
+                            } catch (Exception e) {
+                                subscriber.onError(e);
+                            }
+                        }
+                    })
+                    .subscribeOn(Schedulers.computation())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(new Observer<TaskListDiff.Result>() {
+                        @Override
+                        public void onCompleted() {
+                            //nothing to do
+                        }
+
+                        @Override
+                        public void onError(Throwable e) {
+                            Log.e(TAG, "Error comparing the lists: " + e.getLocalizedMessage());
+                            flushPendingUpdate();
+                        }
+
+                        @Override
+                        public void onNext(TaskListDiff.Result result) {
+                            List<Task> newTasks = pendingTasks;
+                            pendingTasks = null;
+                            if(Global.DEBUG) Log.d(TAG, "Updating list with " + result.size() + " change(s)");
+                            showTasks(newTasks, result.isIncremental() ? result : null);
+                        }
+                    });
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Shows the tasks of a snapshot until the list was loaded, the shown tasks can not be changed until
+     * {@link #updateContent(List)} is called. The loaded list is compared with the snapshot, so only the
+     * tasks that changed since the snapshot was stored are updated.
+     * @param tasks The tasks of the snapshot.
+     */
+    public void showPreview(@NonNull final List<Task> tasks){
+        cancelPendingUpdate();
+        showTasks(tasks, null);
+        preview = true;
+    }
+
+    /**
+     * Shows the passed list and notifies the adapter.
+     * @param tasks The list to show.
+     * @param diff The updates from the shown to the passed list or <code>null</code> to rebind all items.
+     */
+    private void showTasks(@NonNull final List<Task> tasks, final TaskListDiff.Result diff){
+
+        //keep the same reference as the adapter
+        if(this.tasks != tasks && this.tasks instanceof TaskCursorList){
+            ((TaskCursorList) this.tasks).setOnTaskLoadedListener(null);
+        }
+        this.tasks = tasks;
+        if(tasks instanceof TaskCursorList) ((TaskCursorList) tasks).setOnTaskLoadedListener(this);
+        preview = false;
+        adapter.setTasks(tasks);
+
+        if(diff == null){
+            //notify the adapter and invalidate the list views
+            adapter.notifyDataSetChanged();
+            return;
+        }
+
+        diff.dispatchTo(new TaskListDiff.Callback() {
+            @Override
+            public void onRemoved(int index) {
+                adapter.notifyItemRemoved(index);
+            }
+
+            @Override
+            public void onInserted(int index) {
+                adapter.notifyItemInserted(index);
+            }
+
+            @Override
+            public void onMoved(int fromIndex, int toIndex) {
+                adapter.notifyItemMoved(fromIndex, toIndex);
+            }
+
+            @Override
+            public void onChanged(int index) {
+                adapter.notifyItemChanged(index);
+            }
+        });
+    }
+
+    /**
+     * Shows the list of a running comparison immediately. Must be called before the shown list is
+     * changed or before changes of the pending list are notified.
+     */
+    private void flushPendingUpdate(){
+        if(pendingTasks == null) return;
+        List<Task> newTasks = pendingTasks;
+        cancelPendingUpdate();
+        showTasks(newTasks, null);
+    }
+
+    private void cancelPendingUpdate(){
+        if(subDiff != null) subDiff.unsubscribe();
+        subDiff = null;
+        pendingTasks = null;
+    }
+
+    /**
+     * Prepares a snapshot of the tasks shown by the adapter, the indices of the snapshot are adapter positions.
+     * The snapshot of a {@link TaskCursorList} is created by the returned {@link Callable}, other lists only
+     * contain search results or the stored first screen and are read right away.
+     */
+    private Callable<TaskListDiff.Snapshot> snapshotOf(@NonNull final List<Task> tasks){
+        boolean excludeDone = adapter.isDoneTasksHidden();
+        if(tasks instanceof TaskCursorList) return ((TaskCursorList) tasks).snapshot(excludeDone);
+
+        final TaskListDiff.Snapshot snapshot = TaskListDiff.Snapshot.of(tasks, excludeDone);
+        return new Callable<TaskListDiff.Snapshot>() {
+            @Override
+            public TaskListDiff.Snapshot call() {
+                return snapshot;
+            }
+        };
+    }
+
+    /**
+     * Notifies the list view that a task was added to the shown list.
+     * @param index The index of the inserted task.
+     */
+    public void notifyTaskInserted(final int index){
+        flushPendingUpdate();
+        adapter.notifyTaskInserted(index);
+    }
+
+    /**
+     * Notifies the list view that a task of the shown list was changed.
+     * @param index The index of the changed task.
+     */
+    public void notifyTaskChanged(final int index){
+        notifyTaskChanged(index, null);
+    }
+
+    /**
+     * Notifies the list view that a single value of a task of the shown list was changed.
+     * @param index The index of the changed task.
+     * @param change The changed value or <code>null</code> to bind the whole list item.
+     */
+    public void notifyTaskChanged(final int index, final TaskAdapter.Change change){
+        flushPendingUpdate();
+        adapter.notifyTaskChanged(index, change);
+    }
+
+    /**
+     * Notifies the list view that a task of the shown list was moved to another index.
+     * @param fromIndex The previous index of the task.
+     * @param toIndex The new index of the task.
+     */
+    public void notifyTaskMoved(final int fromIndex, final int toIndex){
+        flushPendingUpdate();
+        adapter.notifyTaskMoved(fromIndex, toIndex);
+    }
+
+    /**
+     * Notifies the list view that a task was removed from the shown list.
+     * @param index The previous index of the removed task.
+     */
+    public void notifyTaskRemoved(final int index){
+        flushPendingUpdate();
+        adapter.notifyTaskRemoved(index);
+    }
+
+    /**
+     * Controls whether the user can change the order of the tasks by dragging them.
+     * @param reorderEnabled <code>false</code> if the shown tasks are not the complete list, otherwise <code>true</code>.
+     */
+    public void setReorderEnabled(final boolean reorderEnabled){
+        this.reorderEnabled = reorderEnabled;
     }
 
     /**
@@ -126,14 +379,16 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
      * @param hideDoneTasks <code>true</code> if done tasks should be hidden, otherwise <code>false</code>.
      */
     public void setDoneTasksHidden(final boolean hideDoneTasks){
-        ((TaskAdapter) this.adapter).setDoneTasksHidden(hideDoneTasks);
+        //the running comparison is based on the previous filter
+        flushPendingUpdate();
+        adapter.setDoneTasksHidden(hideDoneTasks);
         adapter.notifyDataSetChanged();
     }
 
     /**
      * Shows a {@link Snackbar} that allows to undo a delete operation. If the {@link Snackbar} is dismissed
      * the {@link Task} is deleted permanently.
-     * @param position The original list position of the task to delete.
+     * @param position The original index of the task to delete in the list.
      * @param deletedTask The {@link Task} to delete.
      */
     private void showUndoSnackbar(final int position, final Task deletedTask) {
@@ -143,7 +398,7 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
             @Override
             public void onClick(View v) {
                 tasks.add(position, deletedTask);
-                adapter.notifyItemInserted(position);
+                adapter.notifyTaskInserted(position);
             }
         });
         deleteSnackBar.setCallback(new Snackbar.Callback() {
@@ -157,7 +412,6 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
                 if(listener!= null && event != Snackbar.Callback.DISMISS_EVENT_ACTION) {
                     Log.d(TAG, "Deleting task " + deletedTask.getId());
                     listener.onTaskDeleted(deletedTask);
-                    updateTaskPositions();
                 }
             }
         });
@@ -165,14 +419,56 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
     }
 
     /**
-     * Updates the list positions of the tasks and notifies the parent
-     * activity about the change
+     * Updates the list position of the task at the passed index from the positions of its neighbours
+     * and notifies the parent activity about the change. Only if there is no free position left
+     * between the neighbours all tasks are rebalanced, the positions are written by the write queue.
+     * @param index The index of the moved task.
      */
-    private void updateTaskPositions() {
-        for(int i=0; i < tasks.size(); i++){
-            tasks.get(i).setListPosition(i);
+    private void updateTaskPosition(final int index) {
+
+        long position = TaskOrder.positionAt(tasks, index);
+
+        if(position == TaskOrder.NO_GAP){
+            if(Global.DEBUG) Log.d(TAG, "No gap left at index " + index + ", rebalancing positions");
+            listener.onTasksRebalanced(rebalance());
+        }
+        else{
+            Task movedTask = tasks.get(index);
+            movedTask.setListPosition(position);
+            listener.onTaskMoved(movedTask);
         }
-        listener.onTaskMoved(tasks);
+    }
+
+    /**
+     * Spreads the positions of the shown tasks evenly.
+     * @return The ids of all tasks in list order.
+     */
+    private long[] rebalance() {
+        //does not load the tasks
+        if(tasks instanceof TaskCursorList) return ((TaskCursorList) tasks).rebalance();
+
+        TaskOrder.rebalance(tasks);
+        long[] ids = new long[tasks.size()];
+        for(int i = 0; i < ids.length; i++) ids[i] = tasks.get(i).getId();
+        return ids;
+    }
+
+    /**
+     * Moves the task at the first index of the shown list to the second index.
+     */
+    private void move(final int from, final int to) {
+        //does not read or pin the moved tasks
+        if(tasks instanceof TaskCursorList) ((TaskCursorList) tasks).move(from, to);
+        else tasks.add(to, tasks.remove(from));
+    }
+
+    /**
+     * Returns the index of the passed task in the shown list or -1 if it is not contained.
+     */
+    private int indexOf(@NonNull final Task task) {
+        //searches the id index instead of loading every task, new tasks have no id yet
+        if(tasks instanceof TaskCursorList && task.getId() != Task.TRANSIENT) return ((TaskCursorList) tasks).indexOfId(task.getId());
+        return tasks.indexOf(task);
     }
 
     /**
@@ -186,6 +482,8 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
     class TaskTouchCallback extends ItemTouchHelper.Callback {
 
         private TaskAdapter.ViewHolder selectedItem;
+        private Task draggedTask;
+        private int dragStartPosition;
         private final int colorSelected = getResources().getColor(R.color.colorAccentLight);
         private final int colorDefault = getResources().getColor(R.color.white);
 
@@ -198,59 +496,100 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
 
         @Override
         public boolean onMove(RecyclerView recyclerView, RecyclerView.ViewHolder viewHolder, RecyclerView.ViewHolder target) {
-            int fromPosition = viewHolder.getAdapterPosition();
-            int toPosition = target.getAdapterPosition();
-            Collections.swap(tasks, fromPosition, toPosition);
-            adapter.notifyItemMoved(fromPosition, toPosition);
-            return true;
+            Tracing.begin("TaskTouchCallback.onMove");
+            try {
+                FrameTimer.onInteraction();
+                int fromPosition = viewHolder.getAdapterPosition();
+                int toPosition = target.getAdapterPosition();
+                //the tasks in between keep their order, including hidden ones, so only the dragged task changes its position
+                int fromIndex = adapter.getListIndex(fromPosition);
+                int toIndex = adapter.getListIndex(toPosition);
+                move(fromIndex, toIndex);
+                adapter.notifyTaskMoved(fromIndex, toIndex);
+                return true;
+            } finally {
+                Tracing.end();
+            }
         }
 
         @Override
         public void onSwiped(RecyclerView.ViewHolder viewHolder, int direction) {
 
-            //backup the deleted tasks and its position
-            final int position = viewHolder.getAdapterPosition();
-            final Task deletedTask = tasks.get(position);
-
-            tasks.remove(position);
-            adapter.notifyItemRemoved(position);
-            //show snackbar with undo action, if the user let's it disappear: delete task
-            showUndoSnackbar(position, deletedTask);
+            Tracing.begin("TaskTouchCallback.onSwiped");
+            try {
+                //backup the deleted tasks and its index
+                final int position = adapter.getListIndex(viewHolder.getAdapterPosition());
+                final Task deletedTask = tasks.get(position);
+
+                tasks.remove(position);
+                adapter.notifyTaskRemoved(position);
+                //show snackbar with undo action, if the user let's it disappear: delete task
+                showUndoSnackbar(position, deletedTask);
+            } finally {
+                Tracing.end();
+            }
         }
 
         @Override
         public boolean isLongPressDragEnabled() {
-            return true;
+            return reorderEnabled && !preview;
         }
 
         @Override
         public boolean isItemViewSwipeEnabled() {
-            return true;
+            return !preview;
         }
 
         @Override
-        public void onMoved(RecyclerView recyclerView, RecyclerView.ViewHolder viewHolder, int fromPos, RecyclerView.ViewHolder target, int toPos, int x, int y) {
-            updateTaskPositions();
-            super.onMoved(recyclerView, viewHolder, fromPos, target, toPos, x, y);
+        public void clearView(RecyclerView recyclerView, RecyclerView.ViewHolder viewHolder) {
+            Tracing.begin("TaskTouchCallback.clearView");
+            try {
+                super.clearView(recyclerView, viewHolder);
+
+                //the drag ended, store the new position of the dropped task only
+                if(draggedTask != null){
+                    int position = viewHolder.getAdapterPosition();
+                    if(position != RecyclerView.NO_POSITION) position = adapter.getListIndex(position);
+                    else position = indexOf(draggedTask);
+                    if(position != RecyclerView.NO_POSITION && position != dragStartPosition) updateTaskPosition(position);
+                    draggedTask = null;
+                }
+            } finally {
+                Tracing.end();
+            }
         }
 
         @Override
         public void onSelectedChanged(RecyclerView.ViewHolder viewHolder, int actionState) {
 
-            //change the background of the list item to show the user, that it is selected
-            if(viewHolder != null) {
-                selectedItem = (TaskAdapter.ViewHolder) viewHolder;
-                selectedItem.setBackgroundColor(colorSelected);
-            }
-            else{
-                //undo
-                if(selectedItem!=null){
-                    selectedItem.setBackgroundColor(getResources().getColor(R.color.white));
-                    selectedItem = null;
+            Tracing.begin("TaskTouchCallback.onSelectedChanged");
+            try {
+                //drags and swipes change the shown list
+                if(actionState != ItemTouchHelper.ACTION_STATE_IDLE) flushPendingUpdate();
+
+                //remember the dragged task and its initial position
+                if(viewHolder != null && actionState == ItemTouchHelper.ACTION_STATE_DRAG){
+                    dragStartPosition = adapter.getListIndex(viewHolder.getAdapterPosition());
+                    draggedTask = tasks.get(dragStartPosition);
                 }
-            }
 
-            super.onSelectedChanged(viewHolder, actionState);
+                //change the background of the list item to show the user, that it is selected
+                if(viewHolder != null) {
+                    selectedItem = (TaskAdapter.ViewHolder) viewHolder;
+                    selectedItem.setBackgroundColor(colorSelected);
+                }
+                else{
+                    //undo
+                    if(selectedItem!=null){
+                        selectedItem.setBackgroundColor(getResources().getColor(R.color.white));
+                        selectedItem = null;
+                    }
+                }
+
+                super.onSelectedChanged(viewHolder, actionState);
+            } finally {
+                Tracing.end();
+            }
         }
     }
 
@@ -277,10 +616,18 @@ public class TasksFragment extends Fragment implements TaskAdapter.ItemActionLis
         void onTaskDeleted(Task deletedTask);
 
         /**
-         * Is called if the user moves tasks and changes the order of the list.
-         * @param tasksWithNewPositions A list of {@link Task} with the updated positions.
+         * Is called if the user moves a task and changes the order of the list.
+         * @param movedTask The moved {@link Task} with its updated position.
+         */
+        void onTaskMoved(Task movedTask);
+
+        /**
+         * Is called instead of {@link #onTaskMoved(Task)} if there was no free position left for the
+         * moved task. The positions of all tasks in memory were already spread evenly.
+         * @param ids The ids of all tasks in list order, the task at index i has the position
+         *            i * {@link TaskOrder#GAP}.
          */
-        void onTaskMoved(List<Task> tasksWithNewPositions);
+        void onTasksRebalanced(long[] ids);
 
     }
 }